@@ -0,0 +1,130 @@
+package compression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of archiving and extracting directories with many entries,
+ * where the per entry overhead dominates over the compression itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int entries;
+
+    @Param({"1024", "65536"})
+    public int entrySize;
+
+    @Param({"TEXT"})
+    public Compressibility profile;
+
+    @Param({"4"})
+    public int threads;
+
+    private File directory;
+
+    private File input;
+
+    private File archive;
+
+    private File output;
+
+    private File extracted;
+
+    private ParallelCompression parallelCompression;
+
+    private ParallelDecompression parallelDecompression;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createTemporaryDirectory();
+
+        input = new File(directory, "input");
+        archive = new File(directory, "input.zip");
+        output = new File(directory, "output.zip");
+        extracted = new File(directory, "extracted");
+
+        input.mkdir();
+
+        for (int i = 0; i < entries; i++) {
+            // Spreads the entries over directories, like in a real source tree.
+            final File parent = new File(input, "directory-" + (i % 100));
+
+            parent.mkdir();
+
+            BenchmarkData.write(new File(parent, "file-" + i + ".dat"), entrySize, profile);
+        }
+
+        Compression.compress(input, archive);
+
+        parallelCompression = new ParallelCompression.ParallelCompressionBuilder()
+                .threads(threads)
+                .build();
+
+        parallelDecompression = new ParallelDecompression.ParallelDecompressionBuilder()
+                .threads(threads)
+                .build();
+    }
+
+    @Setup(Level.Iteration)
+    public void cleanUp() throws IOException {
+        BenchmarkData.delete(extracted);
+
+        extracted.mkdir();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public void compress(final ProcessedBytes processed) throws IOException {
+        Compression.compress(input, output);
+
+        processed.bytes += (long) entries * entrySize;
+    }
+
+    @Benchmark
+    public void parallelCompress(final ProcessedBytes processed) throws IOException {
+        parallelCompression.compress(input, output);
+
+        processed.bytes += (long) entries * entrySize;
+    }
+
+    @Benchmark
+    public void decompress(final ProcessedBytes processed) throws IOException {
+        Decompression.decompress(archive, extracted);
+
+        processed.bytes += (long) entries * entrySize;
+    }
+
+    @Benchmark
+    public void parallelDecompress(final ProcessedBytes processed) throws IOException {
+        parallelDecompression.decompress(archive, extracted);
+
+        processed.bytes += (long) entries * entrySize;
+    }
+
+}
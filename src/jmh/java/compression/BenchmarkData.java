@@ -0,0 +1,83 @@
+package compression;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates the input files of the compression benchmarks.
+ *
+ * <p>
+ * Data is generated from a fixed seed, so every run of a benchmark compresses
+ * exactly the same bytes and results of different runs can be compared.
+ * </p>
+ */
+final class BenchmarkData {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private static final long SEED = 42;
+
+    private static final String[] WORDS = {
+            "file", "system", "upload", "download", "directory", "compression", "metadata", "archive",
+            "the", "of", "and", "to", "in", "is", "for", "with", "on", "that", "by", "from",
+            "2019-03-13", "INFO", "WARN", "ERROR", "request", "response", "took", "ms", "bytes", "user"
+    };
+
+    private BenchmarkData() {}
+
+    /**
+     * Writes {@code size} bytes of the specified compressibility {@code profile} to the {@code file}.
+     */
+    static void write(final File file, final long size, final Compressibility profile) throws IOException {
+        final Random random = new Random(SEED);
+        final byte[] block = new byte[BLOCK_SIZE];
+
+        if (profile == Compressibility.TEXT)
+            fillText(block, random);
+
+        try (final OutputStream output = new FileOutputStream(file)) {
+            for (long written = 0; written < size; written += BLOCK_SIZE) {
+                // Random blocks are regenerated, so the data never repeats.
+                if (profile == Compressibility.RANDOM)
+                    random.nextBytes(block);
+
+                output.write(block, 0, (int) Math.min(BLOCK_SIZE, size - written));
+            }
+        }
+    }
+
+    private static void fillText(final byte[] block, final Random random) {
+        final StringBuilder text = new StringBuilder(block.length + 64);
+
+        while (text.length() < block.length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+            text.append(random.nextInt(16) == 0 ? '\n' : ' ');
+        }
+
+        final byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+
+        System.arraycopy(bytes, 0, block, 0, block.length);
+    }
+
+    static File createTemporaryDirectory() throws IOException {
+        return Files.createTempDirectory("sk-file-system-jmh").toFile();
+    }
+
+    static void delete(final File directory) throws IOException {
+        if (directory == null || !directory.exists())
+            return;
+
+        try (final Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+}
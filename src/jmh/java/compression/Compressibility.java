@@ -0,0 +1,23 @@
+package compression;
+
+/**
+ * How well the data generated for a benchmark compresses.
+ */
+public enum Compressibility {
+
+    /**
+     * Uniformly random bytes that can't be compressed at all.
+     */
+    RANDOM,
+
+    /**
+     * Log-like text with a compression ratio typical for text files.
+     */
+    TEXT,
+
+    /**
+     * Zeros that compress almost completely.
+     */
+    ZEROS
+
+}
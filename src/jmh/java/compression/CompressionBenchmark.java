@@ -0,0 +1,92 @@
+package compression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link Compression} and {@link Decompression} for a
+ * single file of every supported format.
+ *
+ * <p>
+ * Sizes range from 1 KB to 1 GB. Large sizes take a while to generate, so a subset
+ * can be selected with the {@code -p} option of JMH, for example
+ * {@code -p size=1048576 -p extension=.gz}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    public long size;
+
+    @Param({"RANDOM", "TEXT", "ZEROS"})
+    public Compressibility profile;
+
+    @Param({".zip", ".gz", ".lz4"})
+    public String extension;
+
+    private File directory;
+
+    private File input;
+
+    private File compressed;
+
+    private File output;
+
+    private File extracted;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createTemporaryDirectory();
+
+        input = new File(directory, "input.dat");
+        compressed = new File(directory, "input.dat" + extension);
+        output = new File(directory, "output.dat" + extension);
+        extracted = new File(directory, "extracted");
+
+        BenchmarkData.write(input, size, profile);
+        Compression.compress(input, compressed);
+
+        extracted.mkdir();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public void compress(final ProcessedBytes processed) throws IOException {
+        Compression.compress(input, output);
+
+        processed.bytes += size;
+    }
+
+    @Benchmark
+    public void decompress(final ProcessedBytes processed) throws IOException {
+        Decompression.decompress(compressed, extracted);
+
+        processed.bytes += size;
+    }
+
+}
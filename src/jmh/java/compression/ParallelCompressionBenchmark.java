@@ -0,0 +1,88 @@
+package compression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the throughput of {@link ParallelCompression} scales with the number
+ * of threads and the chunk size.
+ *
+ * <p>
+ * The single threaded {@link CompressionBenchmark} of the same size and profile
+ * is the baseline of the results.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelCompressionBenchmark {
+
+    @Param({"67108864", "1073741824"})
+    public long size;
+
+    @Param({"RANDOM", "TEXT"})
+    public Compressibility profile;
+
+    @Param({".zip", ".gz"})
+    public String extension;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"131072", "1048576"})
+    public int chunkSize;
+
+    private File directory;
+
+    private File input;
+
+    private File output;
+
+    private ParallelCompression compression;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createTemporaryDirectory();
+
+        input = new File(directory, "input.dat");
+        output = new File(directory, "output.dat" + extension);
+
+        BenchmarkData.write(input, size, profile);
+
+        compression = new ParallelCompression.ParallelCompressionBuilder()
+                .threads(threads)
+                .chunkSize(chunkSize)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public void compress(final ProcessedBytes processed) throws IOException {
+        compression.compress(input, output);
+
+        processed.bytes += size;
+    }
+
+}
@@ -0,0 +1,28 @@
+package compression;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the uncompressed bytes processed by a benchmark.
+ *
+ * <p>
+ * JMH reports the counter as a rate, so the results contain the throughput of
+ * every benchmark in bytes per second next to its operations per second.
+ * </p>
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ProcessedBytes {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+    }
+
+}
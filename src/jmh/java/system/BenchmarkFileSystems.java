@@ -0,0 +1,89 @@
+package system;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Opens the file systems measured by the benchmarks and generates their input files.
+ *
+ * <p>
+ * File systems are looked up by their class name with
+ * {@link FileSystemManager#getFileSystem(String)}, so any registered implementation
+ * can be measured by passing its name as the {@code implementation} parameter, for
+ * example {@code -p implementation=com.example.S3FileSystem}. Implementations are
+ * configured the same way as in production, with system properties that can be
+ * passed to the benchmark JVM with the {@code -jvmArgsAppend} option of JMH.
+ * </p>
+ *
+ * <p>
+ * {@link LocalFileSystem} is the only exception: unless its root is configured
+ * explicitly, it's rooted in a temporary directory so the benchmarks never touch
+ * the files of the user.
+ * </p>
+ */
+final class BenchmarkFileSystems {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private BenchmarkFileSystems() {}
+
+    /**
+     * Loads the file system registered under the specified {@code className}
+     * and initializes it.
+     *
+     * @param className class name of the file system
+     * @param workspace temporary directory of the benchmark
+     *
+     * @return initialized file system
+     */
+    @SuppressWarnings("unchecked")
+    static FileSystem<Object> open(final String className, final File workspace) {
+        if (className.equals(LocalFileSystem.class.getName())
+                && System.getProperty(LocalFileSystem.ROOT_PROPERTY) == null) {
+            System.setProperty(LocalFileSystem.ROOT_PROPERTY, new File(workspace, "root").getPath());
+            System.setProperty(LocalFileSystem.DOWNLOAD_PROPERTY, new File(workspace, "downloads").getPath());
+        }
+
+        final FileSystem<Object> fileSystem = FileSystemManager.getFileSystem(className);
+
+        fileSystem.initialize();
+
+        return fileSystem;
+    }
+
+    /**
+     * Writes {@code size} random bytes, generated by the {@code random}, to the {@code file}.
+     */
+    static void write(final File file, final long size, final Random random) throws IOException {
+        final byte[] block = new byte[(int) Math.min(BLOCK_SIZE, Math.max(size, 1))];
+
+        try (final OutputStream output = new FileOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+
+                output.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+    }
+
+    static File createTemporaryDirectory() throws IOException {
+        return Files.createTempDirectory("sk-file-system-jmh").toFile();
+    }
+
+    static void delete(final File directory) throws IOException {
+        if (directory == null || !directory.exists())
+            return;
+
+        try (final Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+}
@@ -0,0 +1,355 @@
+package system;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Drives a mixed load of uploads, downloads and queries against a {@link FileSystem}
+ * implementation from many threads and reports its throughput and latency percentiles.
+ *
+ * <p>
+ * Unlike the JMH benchmarks, which measure a single operation at a time, the load test
+ * shows how an implementation behaves under concurrent, sustained use. Every downloaded
+ * file is compared with the uploaded one, so the load test also catches implementations
+ * that corrupt data under concurrency. The implementation is looked up with
+ * {@link FileSystemManager#getFileSystem(String)}. For example
+ *
+ * <pre>{@code
+ * ./gradlew loadTest -PloadTestArgs="system.LocalFileSystem --threads 16 --duration 60"
+ * }</pre>
+ * </p>
+ *
+ * <p>
+ * Options are
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code --threads} number of threads issuing operations, 8 by default</li>
+ *     <li>{@code --duration} duration of the test in seconds, 30 by default</li>
+ *     <li>{@code --files} number of files downloaded and queried, 1000 by default</li>
+ *     <li>{@code --file-size} size of every file in bytes, 64 KB by default</li>
+ *     <li>{@code --uploads} percentage of uploads, 20 by default</li>
+ *     <li>{@code --queries} percentage of queries, 20 by default, the rest are downloads</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    private static final String FILES_DIRECTORY = "load";
+
+    private static final String UPLOADS_DIRECTORY = "load-uploads";
+
+    private enum Operation {
+        UPLOAD, DOWNLOAD, QUERY
+    }
+
+    private final String implementation;
+
+    private int threads = 8;
+
+    private int duration = 30;
+
+    private int files = 1000;
+
+    private int fileSize = 64 * 1024;
+
+    private int uploads = 20;
+
+    private int queries = 20;
+
+    private LoadTest(final String implementation) {
+        this.implementation = implementation;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.err.println("Usage: LoadTest <implementation> [--threads n] [--duration seconds] [--files n]"
+                    + " [--file-size bytes] [--uploads percent] [--queries percent]");
+            System.exit(1);
+        }
+
+        final LoadTest loadTest = new LoadTest(args[0]);
+
+        for (int i = 1; i < args.length; i += 2)
+            loadTest.option(args[i], Integer.parseInt(args[i + 1]));
+
+        loadTest.run();
+    }
+
+    private void option(final String name, final int value) {
+        if (value < 0)
+            throw new IllegalArgumentException(String.format("Option %s can't be negative!", name));
+
+        switch (name) {
+            case "--threads":
+                threads = Math.max(value, 1);
+                break;
+            case "--duration":
+                duration = value;
+                break;
+            case "--files":
+                files = Math.max(value, 1);
+                break;
+            case "--file-size":
+                fileSize = value;
+                break;
+            case "--uploads":
+                uploads = value;
+                break;
+            case "--queries":
+                queries = value;
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown option: %s", name));
+        }
+
+        if (uploads + queries > 100)
+            throw new IllegalArgumentException("Percentages of uploads and queries can't exceed 100!");
+    }
+
+    private void run() throws Exception {
+        final File workspace = BenchmarkFileSystems.createTemporaryDirectory();
+        final FileSystem<Object> fileSystem = BenchmarkFileSystems.open(implementation, workspace);
+
+        try {
+            final long[] checksums = populate(fileSystem, workspace);
+
+            final List<Recorder> recorders = new ArrayList<>();
+            final List<Thread> workers = new ArrayList<>();
+            final CountDownLatch start = new CountDownLatch(1);
+
+            final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+
+            for (int i = 0; i < threads; i++) {
+                final Recorder recorder = new Recorder();
+                final File downloads = new File(workspace, "downloads-" + i);
+                final Random random = new Random(i);
+
+                downloads.mkdir();
+                recorders.add(recorder);
+
+                workers.add(new Thread(() -> {
+                    awaitStart(start);
+
+                    while (System.nanoTime() < end)
+                        execute(fileSystem, nextOperation(random), random.nextInt(files),
+                                workspace, downloads, checksums, recorder);
+                }, "load-test-" + i));
+            }
+
+            workers.forEach(Thread::start);
+            start.countDown();
+
+            for (final Thread worker : workers)
+                worker.join();
+
+            report(recorders);
+        } finally {
+            fileSystem.terminate();
+
+            BenchmarkFileSystems.delete(workspace);
+        }
+    }
+
+    private long[] populate(final FileSystem<Object> fileSystem, final File workspace) throws IOException {
+        final File staging = new File(workspace, "staging");
+        final Random random = new Random(42);
+        final long[] checksums = new long[files];
+        final List<String> paths = new ArrayList<>(files);
+
+        staging.mkdir();
+
+        for (int i = 0; i < files; i++) {
+            final File file = new File(staging, fileName(i));
+
+            BenchmarkFileSystems.write(file, fileSize, random);
+
+            checksums[i] = checksum(file);
+            paths.add(file.getPath());
+        }
+
+        fileSystem.createDir(FILES_DIRECTORY);
+        fileSystem.createDir(UPLOADS_DIRECTORY);
+        fileSystem.uploadCollection(paths, FILES_DIRECTORY);
+
+        return checksums;
+    }
+
+    private Operation nextOperation(final Random random) {
+        final int percent = random.nextInt(100);
+
+        if (percent < uploads)
+            return Operation.UPLOAD;
+
+        return percent < uploads + queries ? Operation.QUERY : Operation.DOWNLOAD;
+    }
+
+    private void execute(final FileSystem<Object> fileSystem, final Operation operation, final int index,
+                         final File workspace, final File downloads, final long[] checksums,
+                         final Recorder recorder) {
+        final String name = fileName(index);
+        final long start = System.nanoTime();
+
+        try {
+            switch (operation) {
+                case UPLOAD:
+                    // Uploads go to their own directory, so downloads never see
+                    // a file that is being overwritten.
+                    fileSystem.upload(new File(workspace, "staging" + File.separator + name).getPath(),
+                            UPLOADS_DIRECTORY);
+                    break;
+                case DOWNLOAD:
+                    fileSystem.download(FILES_DIRECTORY + "/" + name, downloads.getPath());
+                    break;
+                case QUERY:
+                    fileSystem.findFileByName(name);
+                    break;
+            }
+
+            recorder.record(operation, System.nanoTime() - start, operation == Operation.QUERY ? 0 : fileSize);
+
+            if (operation == Operation.DOWNLOAD) {
+                final File downloaded = new File(downloads, name);
+
+                if (checksum(downloaded) != checksums[index])
+                    recorder.corrupted++;
+
+                downloaded.delete();
+            }
+        } catch (final Exception ex) {
+            recorder.errors.merge(operation, 1L, Long::sum);
+        }
+    }
+
+    private void report(final List<Recorder> recorders) {
+        System.out.printf("%s, %d threads, %d s, %d files of %d bytes%n%n",
+                implementation, threads, duration, files, fileSize);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s %10s %8s%n",
+                "operation", "count", "ops/s", "MB/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "errors");
+
+        long corrupted = 0;
+
+        for (final Operation operation : Operation.values()) {
+            final LongList latencies = new LongList();
+
+            long bytes = 0;
+            long errors = 0;
+
+            for (final Recorder recorder : recorders) {
+                latencies.addAll(recorder.latencies.get(operation));
+
+                bytes += recorder.bytes.getOrDefault(operation, 0L);
+                errors += recorder.errors.getOrDefault(operation, 0L);
+            }
+
+            final long[] sorted = latencies.toSortedArray();
+
+            System.out.printf("%-10s %10d %10.1f %10.1f %10d %10d %10d %10d %10d %8d%n",
+                    operation.name().toLowerCase(), sorted.length, (double) sorted.length / duration,
+                    bytes / (1024.0 * 1024.0) / duration, percentile(sorted, 0.5), percentile(sorted, 0.9),
+                    percentile(sorted, 0.99), percentile(sorted, 0.999), percentile(sorted, 1.0), errors);
+        }
+
+        for (final Recorder recorder : recorders)
+            corrupted += recorder.corrupted;
+
+        System.out.printf("%nCorrupted downloads: %d%n", corrupted);
+    }
+
+    private static long percentile(final long[] sorted, final double percentile) {
+        if (sorted.length == 0)
+            return 0;
+
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(index, 0)]);
+    }
+
+    private static String fileName(final int index) {
+        return "file-" + index + ".dat";
+    }
+
+    private static long checksum(final File file) {
+        try {
+            final CRC32 crc = new CRC32();
+
+            crc.update(Files.readAllBytes(file.toPath()));
+
+            return crc.getValue();
+        } catch (final IOException ex) {
+            return -1;
+        }
+    }
+
+    private static void awaitStart(final CountDownLatch start) {
+        try {
+            start.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Results of a single thread, merged once the test is over so recording
+     * never needs synchronization.
+     */
+    private static final class Recorder {
+
+        private final Map<Operation, LongList> latencies = new EnumMap<>(Operation.class);
+
+        private final Map<Operation, Long> bytes = new EnumMap<>(Operation.class);
+
+        private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+
+        private long corrupted;
+
+        private Recorder() {
+            for (final Operation operation : Operation.values())
+                latencies.put(operation, new LongList());
+        }
+
+        private void record(final Operation operation, final long latency, final long transferred) {
+            latencies.get(operation).add(latency);
+            bytes.merge(operation, transferred, Long::sum);
+        }
+
+    }
+
+    private static final class LongList {
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        private void add(final long value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+
+            values[size++] = value;
+        }
+
+        private void addAll(final LongList other) {
+            for (int i = 0; i < other.size; i++)
+                add(other.values[i]);
+        }
+
+        private long[] toSortedArray() {
+            final long[] sorted = Arrays.copyOf(values, size);
+
+            Arrays.sort(sorted);
+
+            return sorted;
+        }
+
+    }
+
+}
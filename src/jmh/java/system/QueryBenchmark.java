@@ -0,0 +1,140 @@
+package system;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency percentiles of the {@code find} queries of a {@link FileSystem}
+ * implementation holding from a thousand to ten million files.
+ *
+ * <p>
+ * Files are spread evenly over {@value #DIRECTORIES} directories and
+ * {@value #EXTENSIONS} extensions and are uploaded in batches, so populating the
+ * file system never needs more than a batch of files on the local disk. Every query
+ * looks for a random name, directory or extension, so caches of the implementation
+ * don't hide the cost of the lookup. Populating large file systems takes a while,
+ * so the sizes can be narrowed with {@code -p files=...}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final int DIRECTORIES = 100;
+
+    private static final int EXTENSIONS = 10;
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"system.LocalFileSystem"})
+    public String implementation;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int files;
+
+    private File workspace;
+
+    private FileSystem<Object> fileSystem;
+
+    private final List<Object> parents = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = BenchmarkFileSystems.createTemporaryDirectory();
+        fileSystem = BenchmarkFileSystems.open(implementation, workspace);
+
+        final File staging = new File(workspace, "staging");
+
+        staging.mkdir();
+
+        for (int directory = 0; directory < DIRECTORIES; directory++)
+            fileSystem.createDir(directoryName(directory));
+
+        for (int first = 0; first < files; first += BATCH_SIZE) {
+            final int last = Math.min(first + BATCH_SIZE, files);
+
+            // Files of a batch share a directory, which keeps every upload call
+            // a single collection while still spreading the files evenly.
+            final String directory = directoryName((first / BATCH_SIZE) % DIRECTORIES);
+
+            final List<String> paths = new ArrayList<>(last - first);
+
+            for (int i = first; i < last; i++) {
+                final File file = new File(staging, fileName(i));
+
+                file.createNewFile();
+                paths.add(file.getPath());
+            }
+
+            fileSystem.uploadCollection(paths, directory);
+
+            paths.forEach(path -> new File(path).delete());
+        }
+
+        for (int directory = 0; directory < DIRECTORIES; directory++)
+            parents.add(fileSystem.findDirectory(directoryName(directory)).get(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fileSystem.terminate();
+
+        BenchmarkFileSystems.delete(workspace);
+    }
+
+    private static String directoryName(final int index) {
+        return "directory-" + index;
+    }
+
+    private static String fileName(final int index) {
+        return "file-" + index + ".ext" + (index % EXTENSIONS);
+    }
+
+    @Benchmark
+    public List<Object> findFileByName() {
+        return fileSystem.findFileByName(fileName(ThreadLocalRandom.current().nextInt(files)));
+    }
+
+    @Benchmark
+    public List<Object> findFileByExtension() {
+        return fileSystem.findFileByExtension(".ext" + ThreadLocalRandom.current().nextInt(EXTENSIONS));
+    }
+
+    @Benchmark
+    public List<Object> findFileByParent() {
+        return fileSystem.findFileByParent(parents.get(ThreadLocalRandom.current().nextInt(DIRECTORIES)));
+    }
+
+    @Benchmark
+    public List<Object> findDirectory() {
+        return fileSystem.findDirectory(directoryName(ThreadLocalRandom.current().nextInt(DIRECTORIES)));
+    }
+
+    @Benchmark
+    public List<Object> findAll() {
+        return fileSystem.findAll();
+    }
+
+}
@@ -0,0 +1,96 @@
+package system;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the upload and download throughput of a {@link FileSystem} implementation.
+ *
+ * <p>
+ * Small sizes measure the operations per second of small files, where the cost of
+ * every call dominates, and large sizes measure the throughput in bytes per second.
+ * Downloads use {@link FileSystem#download(String, String)}, which the measured
+ * implementation has to support.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final String DIRECTORY = "transfers";
+
+    @Param({"system.LocalFileSystem"})
+    public String implementation;
+
+    @Param({"1024", "65536", "1048576", "67108864", "1073741824"})
+    public long size;
+
+    private File workspace;
+
+    private File input;
+
+    private File downloads;
+
+    private String path;
+
+    private FileSystem<Object> fileSystem;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = BenchmarkFileSystems.createTemporaryDirectory();
+        fileSystem = BenchmarkFileSystems.open(implementation, workspace);
+
+        input = new File(workspace, "input.dat");
+        downloads = new File(workspace, "downloaded");
+        path = DIRECTORY + "/" + input.getName();
+
+        BenchmarkFileSystems.write(input, size, new Random(42));
+
+        downloads.mkdir();
+
+        fileSystem.createDir(DIRECTORY);
+        fileSystem.upload(input.getPath(), DIRECTORY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fileSystem.terminate();
+
+        BenchmarkFileSystems.delete(workspace);
+    }
+
+    @Benchmark
+    public void upload(final TransferredBytes transferred) {
+        fileSystem.upload(input.getPath(), DIRECTORY);
+
+        transferred.bytes += size;
+    }
+
+    @Benchmark
+    public void download(final TransferredBytes transferred) {
+        fileSystem.download(path, downloads.getPath());
+
+        transferred.bytes += size;
+    }
+
+}
@@ -0,0 +1,107 @@
+package system;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link FileSystem#uploadCollection(List, String, java.util.concurrent.Executor, int)}
+ * of an implementation scales with the number of uploads in flight.
+ *
+ * <p>
+ * Every failed upload fails the benchmark, so the harness also verifies that the
+ * implementation supports concurrent uploads.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadCollectionBenchmark {
+
+    private static final String DIRECTORY = "collections";
+
+    @Param({"system.LocalFileSystem"})
+    public String implementation;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int parallelism;
+
+    @Param({"1000"})
+    public int files;
+
+    @Param({"65536"})
+    public int fileSize;
+
+    private File workspace;
+
+    private FileSystem<Object> fileSystem;
+
+    private ExecutorService executor;
+
+    private final List<String> paths = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = BenchmarkFileSystems.createTemporaryDirectory();
+        fileSystem = BenchmarkFileSystems.open(implementation, workspace);
+        executor = Executors.newFixedThreadPool(parallelism);
+
+        final File staging = new File(workspace, "staging");
+        final Random random = new Random(42);
+
+        staging.mkdir();
+
+        for (int i = 0; i < files; i++) {
+            final File file = new File(staging, "file-" + i + ".dat");
+
+            BenchmarkFileSystems.write(file, fileSize, random);
+            paths.add(file.getPath());
+        }
+
+        fileSystem.createDir(DIRECTORY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        fileSystem.terminate();
+
+        BenchmarkFileSystems.delete(workspace);
+    }
+
+    @Benchmark
+    public void uploadCollection(final TransferredBytes transferred) {
+        final BatchTransfer transfer = fileSystem.uploadCollection(paths, DIRECTORY, executor, parallelism);
+
+        transfer.getResult().join();
+
+        if (transfer.getFailed() > 0)
+            throw new IllegalStateException(String.format("%d of %d uploads failed!",
+                    transfer.getFailed(), transfer.getTotal()));
+
+        transferred.bytes += (long) files * fileSize;
+    }
+
+}
@@ -0,0 +1,56 @@
+package compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compression format that compresses a single stream of bytes.
+ *
+ * <p>
+ * {@link Compression} and {@link Decompression} choose the codec by the extension
+ * of the compressed file. Built-in codecs are listed in the {@link SupportedExtensions}
+ * class, and additional codecs can be provided with the {@link java.util.ServiceLoader}
+ * mechanism, by listing the implementation class in a
+ * {@code META-INF/services/compression.Codec} file on the class path. Codecs
+ * need a public no-argument constructor and must be thread safe.
+ * </p>
+ *
+ * @see Compression
+ * @see Decompression
+ */
+public interface Codec {
+
+    /**
+     * Returns the extension of the files compressed by this codec, including
+     * the leading dot. For example {@code .gz}.
+     *
+     * @return extension of the compressed files
+     */
+    String getExtension();
+
+    /**
+     * Returns a stream that compresses everything written to it into the specified
+     * {@code output}. Closing the returned stream finishes the compressed data and
+     * closes the {@code output}.
+     *
+     * @param output stream the compressed data is written to
+     *
+     * @return compressing stream
+     *
+     * @exception IOException if an I/O error occurs
+     */
+    OutputStream compressingStream(final OutputStream output) throws IOException;
+
+    /**
+     * Returns a stream that decompresses the data read from the specified {@code input}.
+     * Closing the returned stream closes the {@code input}.
+     *
+     * @param input stream of compressed data
+     *
+     * @return decompressing stream
+     *
+     * @exception IOException if an I/O error occurs
+     */
+    InputStream decompressingStream(final InputStream input) throws IOException;
+}
@@ -0,0 +1,128 @@
+package compression;
+
+import exceptions.FileNotSupportedException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static util.Preconditions.checkNotNull;
+
+/**
+ * Registry of all supported compression formats.
+ *
+ * <p>
+ * Built-in formats are listed in the {@link SupportedExtensions} class. Codecs that
+ * are provided with the {@link ServiceLoader} mechanism are loaded the first time
+ * a format is looked up, and can't replace a built-in format with the same extension.
+ * </p>
+ *
+ * @see Codec
+ */
+final class Codecs {
+
+    private Codecs() {}
+
+    /**
+     * Returns the codec for the file on the specified {@code path} based on its
+     * extension, or null if the file is an archive or the extension isn't supported.
+     */
+    static Codec fromPath(final String path) {
+        final SupportedExtensions format = SupportedExtensions.fromPath(path);
+
+        if (format != null)
+            return format.getCodec();
+
+        final String name = new File(path).getName();
+
+        for (final Codec codec : ServiceCodecs.CODECS)
+            if (name.endsWith(codec.getExtension()) && name.length() > codec.getExtension().length())
+                return codec;
+
+        return null;
+    }
+
+    /**
+     * Returns the codec with the specified {@code extension}, with or without
+     * the leading dot, or null if the extension isn't supported or is an archive.
+     */
+    static Codec fromExtension(final String extension) {
+        return fromPath("stream" + (extension.startsWith(".") ? extension : "." + extension));
+    }
+
+    /**
+     * Returns the codec with the specified {@code extension}, with or without
+     * the leading dot.
+     *
+     * @exception NullPointerException if the specified {@code extension} is null
+     * @exception FileNotSupportedException if there's no codec for the {@code extension}
+     */
+    static Codec checkCodec(final String extension) {
+        final Codec codec = fromExtension(checkNotNull(extension));
+
+        if (codec == null)
+            throw new FileNotSupportedException(
+                    String.format("File extension: %s is not supported for streams", extension));
+
+        return codec;
+    }
+
+    /**
+     * Checks if the file on the specified {@code path} is an archive that can hold
+     * multiple files, based on its extension.
+     */
+    static boolean isArchive(final String path) {
+        final SupportedExtensions format = SupportedExtensions.fromPath(path);
+
+        return format != null && format.isArchive();
+    }
+
+    /**
+     * Returns the supported extension of the file on the specified {@code path},
+     * or null if the extension isn't supported.
+     */
+    static String extensionOf(final String path) {
+        if (isArchive(path))
+            return SupportedExtensions.fromPath(path).getExtension();
+
+        final Codec codec = fromPath(path);
+
+        return codec == null ? null : codec.getExtension();
+    }
+
+    static boolean isSupported(final String path) {
+        return isArchive(path) || fromPath(path) != null;
+    }
+
+    /**
+     * @return extension of every supported format
+     */
+    static List<String> extensions() {
+        return Stream.concat(Arrays.stream(SupportedExtensions.values()).map(SupportedExtensions::getExtension),
+                ServiceCodecs.CODECS.stream().map(Codec::getExtension))
+                .collect(Collectors.toList());
+    }
+
+    // Lazily loads codecs of the service providers.
+    private static final class ServiceCodecs {
+
+        private static final List<Codec> CODECS = load();
+
+        private static List<Codec> load() {
+            final List<Codec> codecs = new ArrayList<>();
+
+            for (final Codec codec : ServiceLoader.load(Codec.class))
+                if (SupportedExtensions.fromPath("file" + codec.getExtension()) == null)
+                    codecs.add(codec);
+
+            return Collections.unmodifiableList(codecs);
+        }
+
+    }
+
+}
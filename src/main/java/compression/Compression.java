@@ -2,11 +2,24 @@ package compression;
 
 import exceptions.FileNotSupportedException;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -17,8 +30,23 @@ import static util.Preconditions.*;
  *
  * <p>
  * This class only supports compression formats that are specified
- * in the {@link SupportedExtensions} class. If an unsupported compression
- * is attempted {@link exceptions.FileNotSupportedException} will be thrown.
+ * in the {@link SupportedExtensions} class or provided as a {@link Codec}.
+ * If an unsupported compression is attempted
+ * {@link exceptions.FileNotSupportedException} will be thrown.
+ * </p>
+ *
+ * <p>
+ * Directories are compressed together with all of their content into a single
+ * archive, where every entry is named by its path relative to the compressed
+ * directory. Multiple files and directories can be compressed into one archive
+ * with {@link #compress(Collection, File)}, as long as their names are distinct,
+ * since every one of them is named by its name alone. Formats that aren't archives,
+ * like {@code .gz}, can only compress a single file.
+ * </p>
+ *
+ * <p>
+ * Formats that aren't archives can also compress streams and channels directly,
+ * without any intermediate files, with {@link #compress(InputStream, OutputStream, String)}.
  * </p>
  *
  * @see SupportedExtensions
@@ -28,6 +56,10 @@ import static util.Preconditions.*;
  */
 public class Compression {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
     private Compression() {}
 
     public static void compress(final File input, final String destinationPath) throws IOException {
@@ -46,38 +78,277 @@ public class Compression {
         compressWorker(input, destination);
     }
 
-    private static void validateDestination(final String destinationPath) {
-        checkNotNull(destinationPath);
+    public static void compress(final Collection<File> inputs, final String destinationPath) throws IOException {
+        checkNotNull(inputs);
+        validateDestination(destinationPath);
 
-        final String extension = destinationPath.substring(destinationPath.lastIndexOf("."));
+        inputs.forEach(input -> checkFile(input, "Input file is invalid!"));
 
-        final boolean isSupported = Arrays.stream(SupportedExtensions.values())
-                .anyMatch(supportedExtension -> supportedExtension.getExtension().equals(extension));
+        compressWorker(inputs, new File(destinationPath));
+    }
+
+    public static void compress(final Collection<File> inputs, final File destination) throws IOException {
+        checkNotNull(inputs);
+        validateDestination(destination.getPath());
+
+        inputs.forEach(input -> checkFile(input, "Input file is invalid!"));
+
+        compressWorker(inputs, destination);
+    }
+
+    /**
+     * Compresses everything read from the {@code input} stream into the {@code output}
+     * stream, in the format of the specified {@code extension}. Neither of the streams
+     * is closed, so compression can be a stage of a larger pipeline.
+     *
+     * <p>
+     * Archive formats need file names for their entries, so only formats that
+     * compress a single stream, like {@code .gz} or {@code .lz4}, are supported.
+     * </p>
+     *
+     * @param input stream to be compressed
+     * @param output stream the compressed data is written to
+     * @param extension extension of the compression format, with or without the leading dot
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception FileNotSupportedException if the {@code extension} isn't supported for streams
+     * @exception IOException if an I/O error occurs
+     */
+    public static void compress(final InputStream input, final OutputStream output, final String extension)
+            throws IOException {
+        checkNotNull(input);
+        checkNotNull(output);
+
+        final Codec codec = Codecs.checkCodec(extension);
+
+        try (final OutputStream outputStream = codec.compressingStream(Streams.unclosable(output))) {
+            Streams.copy(input, outputStream, new byte[BUFFER_SIZE]);
+        }
+    }
+
+    /**
+     * Compresses everything read from the {@code input} channel into the {@code output}
+     * channel. Neither of the channels is closed.
+     *
+     * @see #compress(InputStream, OutputStream, String)
+     */
+    public static void compress(final ReadableByteChannel input, final WritableByteChannel output,
+                                final String extension) throws IOException {
+        checkNotNull(input);
+        checkNotNull(output);
+
+        compress(Channels.newInputStream(input), Channels.newOutputStream(output), extension);
+    }
+
+    /**
+     * Compresses the file or directory on the {@code input} path to the
+     * {@code destination} path.
+     *
+     * @see #compress(File, File)
+     */
+    public static void compress(final Path input, final Path destination) throws IOException {
+        checkNotNull(input);
+        checkNotNull(destination);
+
+        compress(input.toFile(), destination.toFile());
+    }
+
+    static void validateDestination(final String destinationPath) {
+        checkNotNull(destinationPath);
+
+        if (!Codecs.isSupported(destinationPath)) {
+            final String name = new File(destinationPath).getName();
+            final String extension = name.contains(".") ? name.substring(name.lastIndexOf(".")) : "";
 
-        if (!isSupported)
             throw new FileNotSupportedException(String.format("File extension: %s is not supported", extension));
+        }
     }
 
     private static void compressWorker(final File input, final File destination) throws IOException {
-        final ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(destination));
+        compressWorker(collectEntries(input, destination), destination);
+    }
 
-        zipOutputStream.putNextEntry(new ZipEntry(input.getName()));
+    private static void compressWorker(final Collection<File> inputs, final File destination) throws IOException {
+        compressWorker(collectEntries(inputs, destination), destination);
+    }
 
-        final FileInputStream fileInputStream = new FileInputStream(input);
+    private static void compressWorker(final Map<String, File> entries, final File destination) throws IOException {
+        if (Codecs.isArchive(destination.getPath())) {
+            compressArchive(entries, destination);
+        } else {
+            final Codec codec = Codecs.fromPath(destination.getPath());
+
+            compressFile(singleFile(entries, codec.getExtension()), codec, destination);
+        }
+    }
 
-        final byte[] buffer = new byte[1024];
+    private static void compressArchive(final Map<String, File> entries, final File destination) throws IOException {
+        try (final ZipOutputStream zipOutputStream = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(destination), BUFFER_SIZE))) {
+            zipOutputStream.setLevel(compressionLevel);
 
-        int bytesRead;
+            final byte[] buffer = new byte[BUFFER_SIZE];
+
+            for (final Map.Entry<String, File> entry : entries.entrySet()) {
+                zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+
+                if (!entry.getValue().isDirectory())
+                    writeEntry(zipOutputStream, entry.getValue(), buffer);
+
+                zipOutputStream.closeEntry();
+            }
+        }
+    }
 
-        while ((bytesRead = fileInputStream.read(buffer)) > 0)
-            zipOutputStream.write(buffer, 0, bytesRead);
+    private static void compressFile(final File input, final Codec codec, final File destination)
+            throws IOException {
+        try (final OutputStream outputStream = codec.compressingStream(new FileOutputStream(destination))) {
+            writeEntry(outputStream, input, new byte[BUFFER_SIZE]);
+        }
+    }
+
+    /**
+     * Returns the only file of the specified {@code entries}. Formats that aren't
+     * archives can compress only a single file.
+     */
+    static File singleFile(final Map<String, File> entries, final String extension) {
+        final File input = entries.size() == 1 ? entries.values().iterator().next() : null;
+
+        checkArgument(input != null && !input.isDirectory(),
+                String.format("Only a single file can be compressed to %s", extension));
+
+        return input;
+    }
+
+    private static void writeEntry(final OutputStream outputStream, final File input,
+                                   final byte[] buffer) throws IOException {
+        try (final FileInputStream fileInputStream = new FileInputStream(input)) {
+            Streams.copy(fileInputStream, outputStream, buffer);
+        }
+    }
+
+    /**
+     * Collects archive entries of the specified {@code input}, in the order they
+     * should be written. Content of a directory is named relative to the directory itself.
+     */
+    static Map<String, File> collectEntries(final File input, final File destination) throws IOException {
+        return collectEntries(input.isDirectory() ? listFiles(input) : Collections.singletonList(input), destination);
+    }
+
+    /**
+     * Collects archive entries of the specified {@code inputs}, in the order they
+     * should be written. Files are named by their path relative to the parent
+     * of the input they were found in, and directory names end with a slash.
+     *
+     * @exception IllegalArgumentException if two entries have the same name
+     */
+    static Map<String, File> collectEntries(final Collection<File> inputs, final File destination)
+            throws IOException {
+        final Map<String, File> entries = new LinkedHashMap<>();
+        final File absoluteDestination = destination.getAbsoluteFile();
+
+        for (final File input : inputs)
+            collectEntries(entries, input, input.getName(), absoluteDestination);
+
+        return entries;
+    }
+
+    private static void collectEntries(final Map<String, File> entries, final File input, final String entryName,
+                                       final File destination) throws IOException {
+        // Skips the archive itself when it's created inside of the compressed directory.
+        if (input.getAbsoluteFile().equals(destination))
+            return;
+
+        if (!input.isDirectory()) {
+            putEntry(entries, entryName, input);
+
+            return;
+        }
+
+        putEntry(entries, entryName + "/", input);
+
+        for (final File child : listFiles(input))
+            collectEntries(entries, child, entryName + "/" + child.getName(), destination);
+    }
+
+    private static void putEntry(final Map<String, File> entries, final String entryName, final File input) {
+        final File previous = entries.putIfAbsent(entryName, input);
+
+        if (previous != null)
+            throw new IllegalArgumentException(String.format("Entry: %s would hold both %s and %s",
+                    entryName, previous, input));
+    }
+
+    private static Collection<File> listFiles(final File directory) throws IOException {
+        final File[] files = directory.listFiles();
+
+        if (files == null)
+            throw new IOException(String.format("Directory: %s could not be read", directory));
+
+        Arrays.sort(files);
+
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Sets the level used by every format that compresses with DEFLATE, which are
+     * zip, jar and gz. Lower levels compress faster, and higher levels compress better.
+     *
+     * @param level compression level from 0 to 9, or -1 for the default level
+     *
+     * @exception IllegalArgumentException if the level is out of range
+     *
+     * @see Deflater
+     */
+    public static void setCompressionLevel(final int level) {
+        checkArgument(level == Deflater.DEFAULT_COMPRESSION
+                        || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION),
+                "Invalid compression level!");
+
+        compressionLevel = level;
+    }
+
+    public static int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Checks if the file on the specified {@code path} is in one of the supported
+     * compression formats, based on its extension.
+     *
+     * @param path path of the file
+     *
+     * @return true if the file extension is supported by this class
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     */
+    public static boolean isSupported(final String path) {
+        return Codecs.isSupported(checkNotNull(path));
+    }
+
+    /**
+     * Checks if streams can be compressed in the format of the specified
+     * {@code extension} with {@link #compress(InputStream, OutputStream, String)}.
+     * Archive formats can't.
+     *
+     * @param extension extension of the compression format, with or without the leading dot
+     *
+     * @return true if the format compresses a single stream
+     *
+     * @exception NullPointerException if the specified {@code extension} is null
+     */
+    public static boolean isSupportedForStreams(final String extension) {
+        return Codecs.fromExtension(checkNotNull(extension)) != null;
+    }
 
-        zipOutputStream.closeEntry();
-        zipOutputStream.close();
+    /**
+     * @return extensions of all supported compression formats
+     */
+    public static List<String> getSupportedExtensions() {
+        return Codecs.extensions();
     }
 
     public static void printSupportedExtensions() {
-        Arrays.stream(SupportedExtensions.values())
-                .forEach(supportedExtension -> System.out.println(supportedExtension.getExtension()));
+        Codecs.extensions().forEach(System.out::println);
     }
 }
@@ -1,11 +1,21 @@
 package compression;
 
+import exceptions.FileNotFoundException;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import static util.Preconditions.*;
@@ -13,14 +23,18 @@ import static util.Preconditions.*;
 @SuppressWarnings("ResultOfMethodCallIgnored")
 public class Decompression {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private Decompression() {}
 
     public static void decompress(final File input) throws IOException {
         validateInput(input);
 
-        final String destinationPath = input.getPath().substring(0, input.getName().lastIndexOf("."));
-
-        final File destination = new File(destinationPath);
+        // Archives are extracted to a directory named after them, other formats
+        // are decompressed next to the compressed file.
+        final File destination = Codecs.isArchive(input.getPath())
+                ? new File(input.getAbsoluteFile().getParentFile(), stripExtension(input))
+                : input.getAbsoluteFile().getParentFile();
 
         if (!destination.exists())
             destination.mkdir();
@@ -50,19 +64,233 @@ public class Decompression {
         decompressWorker(input, destination);
     }
 
-    private static void validateInput(final File input) {
+    /**
+     * Decompresses everything read from the {@code input} stream, in the format of
+     * the specified {@code extension}, into the {@code output} stream. Neither of the
+     * streams is closed, so decompression can be a stage of a larger pipeline.
+     *
+     * <p>
+     * Only formats that compress a single stream, like {@code .gz} or {@code .lz4},
+     * are supported. Single entries of archives can be decompressed into a stream
+     * with {@link #extractEntry(File, String, OutputStream)}.
+     * </p>
+     *
+     * @param input stream of compressed data
+     * @param output stream the decompressed data is written to
+     * @param extension extension of the compression format, with or without the leading dot
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception exceptions.FileNotSupportedException if the {@code extension} isn't
+     * supported for streams
+     * @exception IOException if an I/O error occurs
+     */
+    public static void decompress(final InputStream input, final OutputStream output, final String extension)
+            throws IOException {
+        checkNotNull(input);
+        checkNotNull(output);
+
+        final Codec codec = Codecs.checkCodec(extension);
+
+        try (final InputStream inputStream = codec.decompressingStream(Streams.unclosable(input))) {
+            Streams.copy(inputStream, output, new byte[BUFFER_SIZE]);
+        }
+    }
+
+    /**
+     * Returns a stream that decompresses the data read from the {@code input}, in the
+     * format of the specified {@code extension}, so only as much of the data is
+     * decompressed as is read or skipped. Closing the returned stream closes the
+     * {@code input}.
+     *
+     * @param input stream of compressed data
+     * @param extension extension of the compression format, with or without the leading dot
+     *
+     * @return decompressing stream
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception exceptions.FileNotSupportedException if the {@code extension} isn't
+     * supported for streams
+     * @exception IOException if an I/O error occurs
+     *
+     * @see #decompress(InputStream, OutputStream, String)
+     */
+    public static InputStream decompressingStream(final InputStream input, final String extension)
+            throws IOException {
+        checkNotNull(input);
+
+        return Codecs.checkCodec(extension).decompressingStream(input);
+    }
+
+    /**
+     * Decompresses everything read from the {@code input} channel into the {@code output}
+     * channel. Neither of the channels is closed.
+     *
+     * @see #decompress(InputStream, OutputStream, String)
+     */
+    public static void decompress(final ReadableByteChannel input, final WritableByteChannel output,
+                                  final String extension) throws IOException {
+        checkNotNull(input);
+        checkNotNull(output);
+
+        decompress(Channels.newInputStream(input), Channels.newOutputStream(output), extension);
+    }
+
+    /**
+     * Decompresses the file on the {@code input} path into the {@code destination}
+     * directory.
+     *
+     * @see #decompress(File, File)
+     */
+    public static void decompress(final Path input, final Path destination) throws IOException {
+        checkNotNull(input);
+        checkNotNull(destination);
+
+        decompress(input.toFile(), destination.toFile());
+    }
+
+    /**
+     * Lists all entries of the specified {@code archive} without extracting them.
+     *
+     * <p>
+     * Entries are read from the central directory at the end of the archive,
+     * so the compressed data of the entries isn't read at all.
+     * </p>
+     *
+     * @param archive archive whose entries are listed
+     *
+     * @return entries of the archive in the order they are stored
+     *
+     * @exception NullPointerException if the specified {@code archive} is null
+     * @exception exceptions.FileNotFoundException if the {@code archive} wasn't found
+     * @exception IllegalArgumentException if the {@code archive} isn't a supported archive
+     * @exception IOException if an I/O error occurs
+     */
+    public static List<ZipEntry> listEntries(final File archive) throws IOException {
+        validateArchive(archive);
+
+        try (final ZipFile zipFile = new ZipFile(archive)) {
+            return zipFile.stream().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Decompresses a single entry of the specified {@code archive} into the
+     * {@code output} stream, which is not closed.
+     *
+     * <p>
+     * The entry is located through the central directory of the archive, so only
+     * the data of that entry is read and inflated, regardless of the archive size.
+     * </p>
+     *
+     * @param archive archive that holds the entry
+     * @param entryName name of the entry, as returned by {@link #listEntries(File)}
+     * @param output stream the decompressed entry is written to
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception exceptions.FileNotFoundException if the {@code archive} or the entry wasn't found
+     * @exception IllegalArgumentException if the {@code archive} isn't a supported archive
+     * @exception IOException if an I/O error occurs
+     */
+    public static void extractEntry(final File archive, final String entryName, final OutputStream output)
+            throws IOException {
+        checkNotNull(entryName);
+        checkNotNull(output);
+        validateArchive(archive);
+
+        try (final ZipFile zipFile = new ZipFile(archive)) {
+            extractEntryWorker(zipFile, entryOf(zipFile, entryName), output);
+        }
+    }
+
+    /**
+     * Decompresses a single entry of the specified {@code archive} into the
+     * {@code destination} file. Missing parent directories of the file are created.
+     *
+     * @param archive archive that holds the entry
+     * @param entryName name of the entry, as returned by {@link #listEntries(File)}
+     * @param destination file the decompressed entry is written to
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception exceptions.FileNotFoundException if the {@code archive} or the entry wasn't found
+     * @exception IllegalArgumentException if the {@code archive} isn't a supported archive
+     * @exception IOException if an I/O error occurs
+     *
+     * @see #extractEntry(File, String, OutputStream)
+     */
+    public static void extractEntry(final File archive, final String entryName, final File destination)
+            throws IOException {
+        checkNotNull(entryName);
+        checkNotNull(destination);
+        validateArchive(archive);
+
+        try (final ZipFile zipFile = new ZipFile(archive)) {
+            // Entry is looked up first, so an existing destination isn't truncated if it's missing.
+            final ZipEntry entry = entryOf(zipFile, entryName);
+            final File parent = destination.getAbsoluteFile().getParentFile();
+
+            if (!parent.exists())
+                parent.mkdirs();
+
+            try (final OutputStream outputStream = new FileOutputStream(destination)) {
+                extractEntryWorker(zipFile, entry, outputStream);
+            }
+        }
+    }
+
+    private static ZipEntry entryOf(final ZipFile zipFile, final String entryName) {
+        final ZipEntry entry = zipFile.getEntry(entryName);
+
+        if (entry == null || entry.isDirectory())
+            throw new FileNotFoundException(String.format("Entry: %s wasn't found", entryName));
+
+        return entry;
+    }
+
+    private static void extractEntryWorker(final ZipFile zipFile, final ZipEntry entry, final OutputStream output)
+            throws IOException {
+        try (final InputStream inputStream = zipFile.getInputStream(entry)) {
+            Streams.copy(inputStream, output, new byte[BUFFER_SIZE]);
+        }
+    }
+
+    private static void validateArchive(final File archive) {
+        validateInput(archive);
+
+        checkArgument(Codecs.isArchive(archive.getPath()), "Input file is not an archive!");
+    }
+
+    static void validateInput(final File input) {
         checkNotNull(input);
         checkFile(input, "Input file wasn't found!");
 
-        final String extension = input.getPath().substring(input.getName().lastIndexOf("."));
+        checkArgument(Codecs.isSupported(input.getPath()), "Input file is not supported!");
+    }
 
-        final boolean isSupported = Arrays.stream(SupportedExtensions.values())
-                .anyMatch(supportedExtension -> supportedExtension.getExtension().equals(extension));
+    private static String stripExtension(final File input) {
+        final String extension = Codecs.extensionOf(input.getPath());
 
-        checkArgument(isSupported, "Input file is not supported!");
+        return input.getName().substring(0, input.getName().length() - extension.length());
     }
 
     private static void decompressWorker(final File input, final File destination) throws IOException {
+        if (Codecs.isArchive(input.getPath()))
+            decompressArchive(input, destination);
+        else
+            decompressFile(input, Codecs.fromPath(input.getPath()), destination);
+    }
+
+    private static void decompressFile(final File input, final Codec codec, final File destination)
+            throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (final InputStream inputStream = codec.decompressingStream(new FileInputStream(input));
+             final OutputStream outputStream = new FileOutputStream(
+                     new File(destination, stripExtension(input)))) {
+            Streams.copy(inputStream, outputStream, buffer);
+        }
+    }
+
+    private static void decompressArchive(final File input, final File destination) throws IOException {
         final byte[] buffer = new byte[1024];
 
         final ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(input));
@@ -72,16 +300,21 @@ public class Decompression {
         while (zipEntry != null) {
             final File newFile = new File(destination.getPath() + File.separator + zipEntry.getName());
 
-            new File(newFile.getParent()).mkdirs();
+            if (zipEntry.isDirectory()) {
+                newFile.mkdirs();
+            } else {
+                new File(newFile.getParent()).mkdirs();
+
+                final FileOutputStream fileOutputStream = new FileOutputStream(newFile);
 
-            final FileOutputStream fileOutputStream = new FileOutputStream(newFile);
+                int bytesRead;
 
-            int bytesRead;
+                while ((bytesRead = zipInputStream.read(buffer)) > 0)
+                    fileOutputStream.write(buffer, 0, bytesRead);
 
-            while ((bytesRead = zipInputStream.read(buffer)) > 0)
-                fileOutputStream.write(buffer, 0, bytesRead);
+                fileOutputStream.close();
+            }
 
-            fileOutputStream.close();
             zipInputStream.closeEntry();
             zipEntry = zipInputStream.getNextEntry();
         }
@@ -91,8 +324,7 @@ public class Decompression {
     }
 
     public static void printSupportedExtensions() {
-        Arrays.stream(SupportedExtensions.values())
-                .forEach(supportedExtension -> System.out.println(supportedExtension.getExtension()));
+        Codecs.extensions().forEach(System.out::println);
     }
 
 }
@@ -0,0 +1,33 @@
+package compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes entries whose data was already compressed with raw DEFLATE
+ * into a compressed file format.
+ *
+ * @see ZipArchiveWriter
+ * @see GzipMemberWriter
+ */
+interface DeflatedEntryWriter extends Closeable {
+
+    /**
+     * Starts a new entry. Compressed data of the entry is written with
+     * {@link #write(byte[], int, int)} and the entry is completed with
+     * {@link #closeEntry(long, long)}.
+     */
+    void putNextEntry(final String name, final long time) throws IOException;
+
+    void write(final byte[] compressed, final int offset, final int length) throws IOException;
+
+    /**
+     * Completes the current entry with the checksum and the uncompressed size of its data.
+     */
+    void closeEntry(final long crc, final long size) throws IOException;
+
+    /**
+     * Writes an empty entry for a directory. Directory names should end with a slash.
+     */
+    void putDirectory(final String name, final long time) throws IOException;
+}
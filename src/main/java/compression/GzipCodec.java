@@ -0,0 +1,38 @@
+package compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Standard GZIP format, readable by {@code gzip} and other tools. Data is
+ * deflated with the level set by {@link Compression#setCompressionLevel(int)}.
+ */
+final class GzipCodec implements Codec {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public String getExtension() {
+        return SupportedExtensions.GZ.getExtension();
+    }
+
+    @Override
+    public OutputStream compressingStream(final OutputStream output) throws IOException {
+        final int level = Compression.getCompressionLevel();
+
+        return new GZIPOutputStream(output, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    @Override
+    public InputStream decompressingStream(final InputStream input) throws IOException {
+        return new GZIPInputStream(input, BUFFER_SIZE);
+    }
+
+}
@@ -0,0 +1,81 @@
+package compression;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static util.Preconditions.checkArgument;
+import static util.Preconditions.checkState;
+
+/**
+ * Writes a single GZIP member from data that was already compressed with raw DEFLATE.
+ *
+ * <p>
+ * The header is written the same way {@link java.util.zip.GZIPOutputStream} writes it,
+ * so the result can be read by {@link java.util.zip.GZIPInputStream} and {@code gzip}.
+ * GZIP holds a single file, so only one entry can be written and directories are
+ * not supported.
+ * </p>
+ */
+final class GzipMemberWriter implements DeflatedEntryWriter {
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0};
+
+    private final OutputStream output;
+
+    private boolean started;
+
+    private boolean closed;
+
+    GzipMemberWriter(final OutputStream output, final int bufferSize) {
+        this.output = new BufferedOutputStream(output, bufferSize);
+    }
+
+    @Override
+    public void putNextEntry(final String name, final long time) throws IOException {
+        checkState(!started, "GZIP can hold only a single file!");
+
+        output.write(HEADER);
+        started = true;
+    }
+
+    @Override
+    public void write(final byte[] compressed, final int offset, final int length) throws IOException {
+        checkState(started && !closed, "No entry is open!");
+
+        output.write(compressed, offset, length);
+    }
+
+    @Override
+    public void closeEntry(final long crc, final long size) throws IOException {
+        checkState(started && !closed, "No entry is open!");
+
+        writeInt(crc);
+        // Size is stored modulo 2^32, as required by the format.
+        writeInt(size);
+
+        closed = true;
+    }
+
+    @Override
+    public void putDirectory(final String name, final long time) {
+        checkArgument(false, "GZIP can't hold directories!");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            checkState(!started || closed, "Entry wasn't closed!");
+        } finally {
+            output.close();
+        }
+    }
+
+    private void writeInt(final long value) throws IOException {
+        output.write((int) (value & 0xFF));
+        output.write((int) ((value >>> 8) & 0xFF));
+        output.write((int) ((value >>> 16) & 0xFF));
+        output.write((int) ((value >>> 24) & 0xFF));
+    }
+
+}
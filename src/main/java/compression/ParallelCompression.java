@@ -0,0 +1,416 @@
+package compression;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static util.Preconditions.*;
+
+/**
+ * Compresses files on multiple cores.
+ *
+ * <p>
+ * Every file is split into chunks of {@link #getChunkSize()} bytes which are deflated
+ * independently on a {@link ForkJoinPool} with {@link #getThreads()} threads. Like
+ * {@code pigz}, every chunk but the last one of a file ends on a byte boundary and
+ * is primed with the last 32 KB of the previous chunk, so the concatenated chunks
+ * form a single standard DEFLATE stream with almost the same ratio as a sequential
+ * one. Chunks of different files are compressed at the same time as well, so
+ * archives of many small files also benefit from multiple cores. The compression
+ * level defaults to {@link Compression#getCompressionLevel()}.
+ * </p>
+ *
+ * <p>
+ * The result is a standard zip archive, or a GZIP file for the {@code .gz} extension,
+ * that can be read by {@link Decompression} and any other tool of the format.
+ * Directories are archived the same way as with {@link Compression}. For example
+ *
+ * <pre>{@code
+ * ParallelCompression compression = new ParallelCompression.ParallelCompressionBuilder()
+ *         .threads(8)
+ *         .chunkSize(256 * 1024)
+ *         .build();
+ *
+ * compression.compress(new File("logs"), new File("logs.zip"));
+ * }</pre>
+ * </p>
+ *
+ * @see Compression
+ */
+public class ParallelCompression {
+
+    /**
+     * Default size of the chunks that are compressed independently.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int threads;
+
+    private final int chunkSize;
+
+    private final int level;
+
+    // Shared by all calls, its idle threads terminate on their own.
+    private final ForkJoinPool pool;
+
+    private ParallelCompression(final ParallelCompressionBuilder builder) {
+        this.threads   = builder.threads;
+        this.chunkSize = builder.chunkSize;
+        this.level     = builder.level;
+        this.pool      = new ForkJoinPool(threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void compress(final File input, final String destinationPath) throws IOException {
+        Compression.validateDestination(destinationPath);
+
+        checkFile(input, "Input file is invalid!");
+
+        compressWorker(Compression.collectEntries(input, new File(destinationPath)), new File(destinationPath));
+    }
+
+    public void compress(final File input, final File destination) throws IOException {
+        Compression.validateDestination(destination.getPath());
+
+        checkFile(input, "Input file is invalid!");
+
+        compressWorker(Compression.collectEntries(input, destination), destination);
+    }
+
+    public void compress(final Collection<File> inputs, final File destination) throws IOException {
+        checkNotNull(inputs);
+        Compression.validateDestination(destination.getPath());
+
+        inputs.forEach(input -> checkFile(input, "Input file is invalid!"));
+
+        compressWorker(Compression.collectEntries(inputs, destination), destination);
+    }
+
+    private void compressWorker(final Map<String, File> entries, final File destination) throws IOException {
+        final Deflaters deflaters = new Deflaters(level);
+
+        // Bounds the memory used by chunks that are read but not yet written.
+        final int maxChunksInFlight = threads * 2;
+
+        final Deque<Chunk> chunks = new ArrayDeque<>();
+
+        try (final DeflatedEntryWriter writer = newWriter(entries, destination)) {
+            for (final Map.Entry<String, File> entry : entries.entrySet()) {
+                final File file = entry.getValue();
+
+                if (file.isDirectory()) {
+                    chunks.add(Chunk.directory(entry.getKey(), file.lastModified()));
+
+                    continue;
+                }
+
+                try (final InputStream input = new FileInputStream(file)) {
+                    final CRC32 crc = new CRC32();
+
+                    long size = 0;
+
+                    byte[] data = new byte[chunkSize];
+                    int length = readChunk(input, data);
+
+                    Chunk previous = null;
+
+                    do {
+                        final byte[] next = length == chunkSize ? new byte[chunkSize] : EMPTY;
+                        final int nextLength = next == EMPTY ? 0 : readChunk(input, next);
+
+                        final Chunk chunk = new Chunk(entry.getKey(), file.lastModified(),
+                                data, length, previous, nextLength == 0);
+
+                        crc.update(data, 0, length);
+                        size += length;
+
+                        if (chunk.last) {
+                            chunk.crc = crc.getValue();
+                            chunk.size = size;
+                        }
+
+                        chunk.compressed = pool.submit(() -> chunk.deflate(deflaters));
+                        chunks.add(chunk);
+
+                        while (chunks.size() >= maxChunksInFlight)
+                            writeChunk(writer, chunks.poll());
+
+                        previous = chunk;
+                        data = next;
+                        length = nextLength;
+                    } while (!previous.last);
+                }
+            }
+
+            while (!chunks.isEmpty())
+                writeChunk(writer, chunks.poll());
+        } finally {
+            // Chunks of a failed call aren't compressed anymore, and their deflaters end once released.
+            chunks.forEach(chunk -> {
+                if (chunk.compressed != null)
+                    chunk.compressed.cancel(false);
+            });
+
+            deflaters.close();
+        }
+    }
+
+    private static DeflatedEntryWriter newWriter(final Map<String, File> entries, final File destination)
+            throws IOException {
+        if (Codecs.isArchive(destination.getPath()))
+            return new ZipArchiveWriter(new FileOutputStream(destination), BUFFER_SIZE);
+
+        final Codec codec = Codecs.fromPath(destination.getPath());
+
+        checkArgument(codec instanceof GzipCodec,
+                String.format("Format %s can't be compressed in parallel", codec.getExtension()));
+
+        Compression.singleFile(entries, codec.getExtension());
+
+        return new GzipMemberWriter(new FileOutputStream(destination), BUFFER_SIZE);
+    }
+
+    private static int readChunk(final InputStream input, final byte[] chunk) throws IOException {
+        int length = 0;
+        int bytesRead;
+
+        while (length < chunk.length && (bytesRead = input.read(chunk, length, chunk.length - length)) > 0)
+            length += bytesRead;
+
+        return length;
+    }
+
+    private static void writeChunk(final DeflatedEntryWriter writer, final Chunk chunk) throws IOException {
+        if (chunk.directory) {
+            writer.putDirectory(chunk.entryName, chunk.time);
+
+            return;
+        }
+
+        if (chunk.first)
+            writer.putNextEntry(chunk.entryName, chunk.time);
+
+        final byte[] compressed = chunk.compressed.join();
+
+        writer.write(compressed, 0, compressed.length);
+
+        if (chunk.last)
+            writer.closeEntry(chunk.crc, chunk.size);
+    }
+
+    /**
+     * Deflaters of a single call, which are reused by its chunks and ended with it,
+     * so their native memory is released as soon as the call completes.
+     */
+    private static final class Deflaters implements Closeable {
+
+        private final int level;
+
+        private final Queue<Deflater> idle = new ConcurrentLinkedQueue<>();
+
+        private volatile boolean closed;
+
+        private Deflaters(final int level) {
+            this.level = level;
+        }
+
+        private Deflater acquire() {
+            final Deflater deflater = idle.poll();
+
+            return deflater == null ? new Deflater(level, true) : deflater;
+        }
+
+        private void release(final Deflater deflater) {
+            deflater.reset();
+            idle.add(deflater);
+
+            // Deflaters released after closing are ended by whichever thread takes them first.
+            if (closed && idle.remove(deflater))
+                deflater.end();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+
+            Deflater deflater;
+
+            while ((deflater = idle.poll()) != null)
+                deflater.end();
+        }
+
+    }
+
+    private static final class Chunk {
+
+        private final String entryName;
+
+        private final long time;
+
+        private final boolean directory;
+
+        private final boolean first;
+
+        private final boolean last;
+
+        private final byte[] data;
+
+        private final int length;
+
+        // Input of the previous chunk of the same file, used as the dictionary.
+        private final byte[] dictionary;
+
+        private final int dictionaryLength;
+
+        private ForkJoinTask<byte[]> compressed;
+
+        private long crc;
+
+        private long size;
+
+        private Chunk(final String entryName, final long time, final byte[] data, final int length,
+                      final Chunk previous, final boolean last) {
+            this.entryName        = entryName;
+            this.time             = time;
+            this.directory        = false;
+            this.first            = previous == null;
+            this.last             = last;
+            this.data             = data;
+            this.length           = length;
+            this.dictionary       = previous == null ? null : previous.data;
+            this.dictionaryLength = previous == null ? 0 : previous.length;
+        }
+
+        private Chunk(final String entryName, final long time) {
+            this.entryName        = entryName;
+            this.time             = time;
+            this.directory        = true;
+            this.first            = true;
+            this.last             = true;
+            this.data             = EMPTY;
+            this.length           = 0;
+            this.dictionary       = null;
+            this.dictionaryLength = 0;
+        }
+
+        private static Chunk directory(final String entryName, final long time) {
+            return new Chunk(entryName, time);
+        }
+
+        private byte[] deflate(final Deflaters deflaters) {
+            final Deflater deflater = deflaters.acquire();
+
+            try {
+                return deflate(deflater);
+            } finally {
+                deflaters.release(deflater);
+            }
+        }
+
+        private byte[] deflate(final Deflater deflater) {
+            if (dictionary != null) {
+                final int dictionarySize = Math.min(DICTIONARY_SIZE, dictionaryLength);
+
+                deflater.setDictionary(dictionary, dictionaryLength - dictionarySize, dictionarySize);
+            }
+
+            deflater.setInput(data, 0, length);
+
+            // The last chunk finishes the stream, others are flushed to a byte boundary
+            // so the next chunk can be appended to them.
+            if (last)
+                deflater.finish();
+
+            final int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+
+            byte[] output = new byte[Math.max(length + length / 8 + 64, 64)];
+            int outputLength = 0;
+
+            while (true) {
+                outputLength += deflater.deflate(output, outputLength, output.length - outputLength, flush);
+
+                final boolean done = last ? deflater.finished() : outputLength < output.length;
+
+                if (done)
+                    return Arrays.copyOf(output, outputLength);
+
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+        }
+
+    }
+
+    public static class ParallelCompressionBuilder {
+
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+        private int level = Compression.getCompressionLevel();
+
+        public ParallelCompressionBuilder() {}
+
+        public ParallelCompressionBuilder threads(final int threads) {
+            checkArgument(threads > 0, "Number of threads must be positive!");
+
+            this.threads = threads;
+
+            return this;
+        }
+
+        public ParallelCompressionBuilder chunkSize(final int chunkSize) {
+            checkArgument(chunkSize > 0, "Chunk size must be positive!");
+
+            this.chunkSize = chunkSize;
+
+            return this;
+        }
+
+        public ParallelCompressionBuilder level(final int level) {
+            checkArgument(level == Deflater.DEFAULT_COMPRESSION
+                            || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION),
+                    "Invalid compression level!");
+
+            this.level = level;
+
+            return this;
+        }
+
+        public ParallelCompression build() {
+            return new ParallelCompression(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,191 @@
+package compression;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static util.Preconditions.*;
+
+/**
+ * Extracts archives on multiple threads.
+ *
+ * <p>
+ * Instead of reading the archive from start to end, the entries are located
+ * through the central directory of the archive with {@link ZipFile}, and every
+ * file is inflated and written on its own thread, with the largest files started
+ * first. All directories are created once, before any file is extracted.
+ * </p>
+ *
+ * <p>
+ * Only archives can be extracted in parallel. Other formats hold a single
+ * compressed stream and are decompressed the same way as with {@link Decompression}.
+ * For example
+ *
+ * <pre>{@code
+ * ParallelDecompression decompression = new ParallelDecompression.ParallelDecompressionBuilder()
+ *         .threads(8)
+ *         .build();
+ *
+ * decompression.decompress(new File("logs.zip"), new File("logs"));
+ * }</pre>
+ * </p>
+ *
+ * @see Decompression
+ */
+@SuppressWarnings("ResultOfMethodCallIgnored")
+public class ParallelDecompression {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int threads;
+
+    private ParallelDecompression(final ParallelDecompressionBuilder builder) {
+        this.threads = builder.threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void decompress(final File input, final String destinationPath) throws IOException {
+        checkNotNull(destinationPath);
+
+        decompress(input, new File(destinationPath));
+    }
+
+    public void decompress(final File input, final File destination) throws IOException {
+        checkNotNull(destination);
+        Decompression.validateInput(input);
+
+        if (!Codecs.isArchive(input.getPath())) {
+            Decompression.decompress(input, destination);
+
+            return;
+        }
+
+        if (!destination.exists())
+            destination.mkdirs();
+
+        decompressWorker(input, destination);
+    }
+
+    private void decompressWorker(final File input, final File destination) throws IOException {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        final Path root = destination.toPath().toAbsolutePath().normalize();
+
+        try (final ZipFile zipFile = new ZipFile(input)) {
+            final List<ZipEntry> files = new ArrayList<>();
+            final Set<File> directories = new TreeSet<>();
+
+            for (final ZipEntry entry : Collections.list(zipFile.entries())) {
+                final File file = resolve(root, entry);
+
+                if (entry.isDirectory()) {
+                    directories.add(file);
+                } else {
+                    directories.add(file.getParentFile());
+                    files.add(entry);
+                }
+            }
+
+            directories.forEach(File::mkdirs);
+
+            // Largest files are started first so that one of them doesn't
+            // end up being inflated alone after all others are done.
+            files.sort(Comparator.comparingLong(ZipEntry::getSize).reversed());
+
+            final List<Future<?>> extractions = new ArrayList<>();
+
+            for (final ZipEntry entry : files)
+                extractions.add(pool.submit(() -> {
+                    extractEntry(zipFile, entry, resolve(root, entry));
+
+                    return null;
+                }));
+
+            for (final Future<?> extraction : extractions)
+                awaitExtraction(extraction);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void awaitExtraction(final Future<?> extraction) throws IOException {
+        try {
+            extraction.get();
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+
+            throw new IOException(ex.getCause());
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Extraction was interrupted!", ex);
+        }
+    }
+
+    private static void extractEntry(final ZipFile zipFile, final ZipEntry entry, final File destination)
+            throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (final InputStream inputStream = zipFile.getInputStream(entry);
+             final OutputStream outputStream = new FileOutputStream(destination)) {
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(buffer)) > 0)
+                outputStream.write(buffer, 0, bytesRead);
+        }
+    }
+
+    /**
+     * Resolves the file of the specified {@code entry} in the {@code destination}
+     * directory, rejecting entries whose names point outside of it. The destination
+     * has to be absolute and normalized.
+     */
+    static File resolve(final Path destination, final ZipEntry entry) throws IOException {
+        final Path file = destination.resolve(entry.getName()).normalize();
+
+        if (!file.startsWith(destination))
+            throw new IOException(String.format("Entry: %s is outside of the destination", entry.getName()));
+
+        return file.toFile();
+    }
+
+    public static class ParallelDecompressionBuilder {
+
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        public ParallelDecompressionBuilder() {}
+
+        public ParallelDecompressionBuilder threads(final int threads) {
+            checkArgument(threads > 0, "Number of threads must be positive!");
+
+            this.threads = threads;
+
+            return this;
+        }
+
+        public ParallelDecompression build() {
+            return new ParallelDecompression(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package compression;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Static convenience methods for streams passed in by the callers of
+ * {@link Compression} and {@link Decompression}.
+ */
+final class Streams {
+
+    private Streams() {}
+
+    /**
+     * Copies all remaining bytes of the {@code input} to the {@code output} through
+     * the specified {@code buffer}. Neither of the streams is closed.
+     */
+    static long copy(final InputStream input, final OutputStream output, final byte[] buffer) throws IOException {
+        long copied = 0;
+        int bytesRead;
+
+        while ((bytesRead = input.read(buffer)) > 0) {
+            output.write(buffer, 0, bytesRead);
+            copied += bytesRead;
+        }
+
+        return copied;
+    }
+
+    /**
+     * Returns a view of the {@code output} that only flushes it when closed, so a codec
+     * stream can be closed to finish the compressed data without closing the caller's stream.
+     */
+    static OutputStream unclosable(final OutputStream output) {
+        return new FilterOutputStream(output) {
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.flush();
+            }
+
+        };
+    }
+
+    /**
+     * Returns a view of the {@code input} that isn't closed when the view is closed.
+     */
+    static InputStream unclosable(final InputStream input) {
+        return new FilterInputStream(input) {
+
+            @Override
+            public void close() {}
+
+        };
+    }
+
+}
@@ -1,18 +1,58 @@
 package compression;
 
+import java.io.File;
+
 import static util.Preconditions.checkNotNull;
 
+/**
+ * Compression formats supported by the {@link Compression} and {@link Decompression}
+ * classes, keyed by their file extension.
+ *
+ * <p>
+ * Archive formats hold any number of named files and directories. Other formats
+ * compress a single file through their {@link Codec}. Codecs that aren't built in
+ * are registered with the {@link Codecs} class.
+ * </p>
+ */
 enum SupportedExtensions {
 
-    ZIP(".zip"), JAR(".jar"), GZ(".gz");
+    ZIP(".zip", null), JAR(".jar", null), GZ(".gz", new GzipCodec()), LZ4(".lz4", new Lz4Codec());
 
     private final String extension;
 
-    SupportedExtensions(final String extension) {
+    private final Codec codec;
+
+    SupportedExtensions(final String extension, final Codec codec) {
         this.extension = checkNotNull(extension);
+        this.codec = codec;
     }
 
     String getExtension() {
         return extension;
     }
+
+    boolean isArchive() {
+        return codec == null;
+    }
+
+    /**
+     * @return codec of this format or null if this is an archive format
+     */
+    Codec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Returns the format of the file on the specified {@code path} based on its
+     * extension, or null if the extension isn't supported.
+     */
+    static SupportedExtensions fromPath(final String path) {
+        final String name = new File(path).getName();
+
+        for (final SupportedExtensions supportedExtension : values())
+            if (name.endsWith(supportedExtension.extension) && name.length() > supportedExtension.extension.length())
+                return supportedExtension;
+
+        return null;
+    }
 }
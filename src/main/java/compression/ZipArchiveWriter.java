@@ -0,0 +1,313 @@
+package compression;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static util.Preconditions.checkState;
+
+/**
+ * Writes a zip archive from entries whose data was already compressed
+ * with raw DEFLATE.
+ *
+ * <p>
+ * Unlike {@link java.util.zip.ZipOutputStream}, this writer doesn't compress
+ * anything itself, which lets the entry data be deflated on other threads.
+ * Entries are written the same way {@code ZipOutputStream} writes them: sizes
+ * and checksums follow the data in a data descriptor, and ZIP64 records are
+ * used only when sizes, offsets or the entry count exceed the limits of the
+ * original format.
+ * </p>
+ */
+final class ZipArchiveWriter implements DeflatedEntryWriter {
+
+    private static final long LOCAL_HEADER_SIGNATURE = 0x04034b50L;
+
+    private static final long DATA_DESCRIPTOR_SIGNATURE = 0x08074b50L;
+
+    private static final long CENTRAL_HEADER_SIGNATURE = 0x02014b50L;
+
+    private static final long ZIP64_END_SIGNATURE = 0x06064b50L;
+
+    private static final long ZIP64_LOCATOR_SIGNATURE = 0x07064b50L;
+
+    private static final long END_SIGNATURE = 0x06054b50L;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int VERSION = 20;
+
+    private static final int ZIP64_VERSION = 45;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    private static final int DATA_DESCRIPTOR_FLAG = 0x0008;
+
+    private static final int UTF8_FLAG = 0x0800;
+
+    private final CountingOutputStream output;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private Entry current;
+
+    ZipArchiveWriter(final OutputStream output, final int bufferSize) {
+        this.output = new CountingOutputStream(new BufferedOutputStream(output, bufferSize));
+    }
+
+    @Override
+    public void putNextEntry(final String name, final long time) throws IOException {
+        checkState(current == null, "Previous entry wasn't closed!");
+
+        current = new Entry(name, time, DEFLATED, DATA_DESCRIPTOR_FLAG | UTF8_FLAG, output.count);
+
+        writeLocalHeader(current);
+    }
+
+    @Override
+    public void write(final byte[] compressed, final int offset, final int length) throws IOException {
+        checkState(current != null, "No entry is open!");
+
+        output.write(compressed, offset, length);
+        current.compressedSize += length;
+    }
+
+    @Override
+    public void closeEntry(final long crc, final long size) throws IOException {
+        checkState(current != null, "No entry is open!");
+
+        current.crc = crc;
+        current.size = size;
+
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt(crc);
+
+        if (current.compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC) {
+            writeLong(current.compressedSize);
+            writeLong(size);
+        } else {
+            writeInt(current.compressedSize);
+            writeInt(size);
+        }
+
+        entries.add(current);
+        current = null;
+    }
+
+    /**
+     * Writes an empty, stored entry for a directory.
+     */
+    @Override
+    public void putDirectory(final String name, final long time) throws IOException {
+        checkState(current == null, "Previous entry wasn't closed!");
+
+        final Entry directory = new Entry(name, time, STORED, UTF8_FLAG, output.count);
+
+        writeLocalHeader(directory);
+
+        entries.add(directory);
+    }
+
+    private void writeLocalHeader(final Entry entry) throws IOException {
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        // Checksum and sizes are stored in the data descriptor of deflated entries,
+        // and are all zero for directories.
+        writeInt(0);
+        writeInt(0);
+        writeInt(0);
+        writeShort(entry.name.length);
+        writeShort(0);
+        output.write(entry.name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Stream is closed even if the archive can't be finished.
+        try {
+            checkState(current == null, "Last entry wasn't closed!");
+
+            final long centralDirectoryOffset = output.count;
+
+            for (final Entry entry : entries)
+                writeCentralHeader(entry);
+
+            final long centralDirectorySize = output.count - centralDirectoryOffset;
+
+            if (entries.size() >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC
+                    || centralDirectorySize >= ZIP64_MAGIC)
+                writeZip64End(centralDirectoryOffset, centralDirectorySize);
+
+            writeInt(END_SIGNATURE);
+            writeShort(0);
+            writeShort(0);
+            writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+            writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+            writeInt(Math.min(centralDirectorySize, ZIP64_MAGIC));
+            writeInt(Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+            writeShort(0);
+        } finally {
+            output.close();
+        }
+    }
+
+    private void writeCentralHeader(final Entry entry) throws IOException {
+        final boolean zip64Size = entry.size >= ZIP64_MAGIC;
+        final boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC;
+        final boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+
+        final int zip64ExtraSize = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+        final int version = zip64ExtraSize > 0 ? ZIP64_VERSION : VERSION;
+
+        writeInt(CENTRAL_HEADER_SIGNATURE);
+        writeShort(version);
+        writeShort(version);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(zip64CompressedSize ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(zip64Size ? ZIP64_MAGIC : entry.size);
+        writeShort(entry.name.length);
+        writeShort(zip64ExtraSize > 0 ? zip64ExtraSize + 4 : 0);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt(zip64Offset ? ZIP64_MAGIC : entry.offset);
+        output.write(entry.name);
+
+        if (zip64ExtraSize > 0) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(zip64ExtraSize);
+
+            if (zip64Size)
+                writeLong(entry.size);
+
+            if (zip64CompressedSize)
+                writeLong(entry.compressedSize);
+
+            if (zip64Offset)
+                writeLong(entry.offset);
+        }
+    }
+
+    private void writeZip64End(final long centralDirectoryOffset, final long centralDirectorySize)
+            throws IOException {
+        final long zip64EndOffset = output.count;
+
+        writeInt(ZIP64_END_SIGNATURE);
+        writeLong(44);
+        writeShort(ZIP64_VERSION);
+        writeShort(ZIP64_VERSION);
+        writeInt(0);
+        writeInt(0);
+        writeLong(entries.size());
+        writeLong(entries.size());
+        writeLong(centralDirectorySize);
+        writeLong(centralDirectoryOffset);
+
+        writeInt(ZIP64_LOCATOR_SIGNATURE);
+        writeInt(0);
+        writeLong(zip64EndOffset);
+        writeInt(1);
+    }
+
+    private void writeShort(final int value) throws IOException {
+        output.write(value & 0xFF);
+        output.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(final long value) throws IOException {
+        writeShort((int) (value & 0xFFFF));
+        writeShort((int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(final long value) throws IOException {
+        writeInt(value & 0xFFFFFFFFL);
+        writeInt(value >>> 32);
+    }
+
+    private static long toDosTime(final long time) {
+        final LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+
+        if (date.getYear() < 1980)
+            return (1 << 21) | (1 << 16);
+
+        return ((long) (date.getYear() - 1980) << 25) | (date.getMonthValue() << 21) | (date.getDayOfMonth() << 16)
+                | (date.getHour() << 11) | (date.getMinute() << 5) | (date.getSecond() >> 1);
+    }
+
+    private static final class Entry {
+
+        private final byte[] name;
+
+        private final long dosTime;
+
+        private final int method;
+
+        private final int flags;
+
+        private final long offset;
+
+        private long crc;
+
+        private long size;
+
+        private long compressedSize;
+
+        private Entry(final String name, final long time, final int method, final int flags, final long offset) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.dosTime = toDosTime(time);
+            this.method = method;
+            this.flags = flags;
+            this.offset = offset;
+        }
+
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private final OutputStream output;
+
+        private long count;
+
+        private CountingOutputStream(final OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            output.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            output.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+
+    }
+
+}
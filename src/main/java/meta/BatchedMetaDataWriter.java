@@ -0,0 +1,491 @@
+package meta;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static util.Preconditions.*;
+
+/**
+ * Writes meta files in batches on a background thread.
+ *
+ * <p>
+ * Every call to {@link #write(FileMetaData, Path)} only queues the meta data and
+ * returns a {@link CompletableFuture} that completes once the meta file is written,
+ * or completes exceptionally with the {@link IOException} that prevented it. The
+ * background thread collects queued writes into batches of up to
+ * {@link #getMaxBatchSize()} meta files, waiting at most {@link #getMaxDelay()}
+ * milliseconds for a batch to fill up. Writes of the same meta file within a batch
+ * are coalesced, so only the latest meta data is written.
+ * </p>
+ *
+ * <p>
+ * With {@link Durability#SYNC} durability every batch is forced to the disk before
+ * its futures complete. Files of a batch are written first and forced together,
+ * followed by a single sync of every directory they are in, so the cost of syncing
+ * is shared by the whole batch instead of being paid for every meta file. With
+ * {@link Durability#WRITE} durability futures complete as soon as the operating
+ * system accepted the data, which is as durable as {@link FileMetaDataWriter}. If
+ * the background thread is interrupted the writer is closed, after the queued meta
+ * data is written. For example
+ *
+ * <pre>{@code
+ * try (BatchedMetaDataWriter writer = new BatchedMetaDataWriter.BatchedMetaDataWriterBuilder()
+ *         .durability(BatchedMetaDataWriter.Durability.SYNC)
+ *         .build()) {
+ *     List<CompletableFuture<Void>> writes = files.stream()
+ *             .map(file -> writer.write(metaDataOf(file), metaFileOf(file)))
+ *             .collect(Collectors.toList());
+ *
+ *     CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+ * }
+ * }</pre>
+ * </p>
+ *
+ * @see FileMetaDataWriter
+ */
+public class BatchedMetaDataWriter implements Closeable {
+
+    /**
+     * When the futures of written meta files complete.
+     */
+    public enum Durability {
+
+        /**
+         * Futures complete when the meta files are handed to the operating system,
+         * so they survive a crash of the process but not of the machine.
+         */
+        WRITE,
+
+        /**
+         * Futures complete when the meta files and their directory entries are
+         * forced to the disk, so they survive a crash of the machine.
+         */
+        SYNC
+
+    }
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    public static final long DEFAULT_MAX_DELAY = 10;
+
+    // Bounds the number of files kept open while a batch is synced.
+    private static final int SYNC_GROUP_SIZE = 128;
+
+    private static final Request CLOSE = new Request(null, null, null);
+
+    private final MetaDataFormat format;
+
+    private final Durability durability;
+
+    private final int maxBatchSize;
+
+    private final long maxDelay;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+    private final Thread worker;
+
+    // Guards closing, so no request is queued after the close request.
+    private final Object lock = new Object();
+
+    private boolean closed;
+
+    // First failure since the previous flush, only used by the background thread.
+    private Throwable failureSinceFlush;
+
+    private BatchedMetaDataWriter(final BatchedMetaDataWriterBuilder builder) {
+        this.format       = builder.format;
+        this.durability   = builder.durability;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxDelay     = builder.maxDelay;
+
+        this.worker = new Thread(this::run, "meta-data-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public MetaDataFormat getFormat() {
+        return format;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Queues the {@code metaData} to be written to the meta file on the specified
+     * {@code destination}.
+     *
+     * @param metaData meta data to be written
+     * @param destination path of the meta file
+     *
+     * @return future that completes once the meta file is written with the
+     * durability of this writer
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IllegalStateException if the writer was closed
+     */
+    public CompletableFuture<Void> write(final FileMetaData metaData, final Path destination) {
+        checkNotNull(metaData);
+        checkNotNull(destination);
+
+        return enqueue(new Request(metaData, destination.toAbsolutePath(), new CompletableFuture<>()));
+    }
+
+    /**
+     * Writes all queued meta data without waiting for the batch to fill up.
+     *
+     * @return future that completes once all meta data queued before this call is
+     * written, or exceptionally with the first failure to write meta data since the
+     * previous flush
+     *
+     * @exception IllegalStateException if the writer was closed
+     */
+    public CompletableFuture<Void> flush() {
+        return enqueue(new Request(null, null, new CompletableFuture<>()));
+    }
+
+    private CompletableFuture<Void> enqueue(final Request request) {
+        synchronized (lock) {
+            checkState(!closed, "Meta data writer is closed!");
+
+            queue.add(request);
+        }
+
+        return request.future;
+    }
+
+    /**
+     * Writes all queued meta data and stops the background thread. Closing a writer
+     * that is already closed has no effect.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!closed) {
+                closed = true;
+                queue.add(CLOSE);
+            }
+        }
+
+        if (Thread.currentThread() == worker)
+            return;
+
+        try {
+            worker.join();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        final List<Request> batch = new ArrayList<>(maxBatchSize);
+
+        boolean running = true;
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+
+                running = collect(batch);
+            } catch (final InterruptedException ex) {
+                // An interrupted writer is closed, but meta data queued so far is still written.
+                synchronized (lock) {
+                    closed = true;
+                }
+
+                queue.drainTo(batch);
+                batch.remove(CLOSE);
+
+                running = false;
+            }
+
+            try {
+                writeBatch(batch);
+            } catch (final Throwable ex) {
+                // Nothing waits for the futures of a batch that couldn't be written, unless they fail.
+                batch.forEach(request -> request.future.completeExceptionally(ex));
+
+                // A flush of this batch has already failed, later flushes fail as well otherwise.
+                if (batch.stream().anyMatch(Request::isFlush))
+                    failureSinceFlush = null;
+                else if (failureSinceFlush == null)
+                    failureSinceFlush = ex;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds queued requests to the {@code batch} until it's full, the maximum delay
+     * passes or a flush is requested.
+     *
+     * @return false if the writer was closed
+     */
+    private boolean collect(final List<Request> batch) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+
+        Request last = batch.get(batch.size() - 1);
+
+        while (batch.size() < maxBatchSize && last != CLOSE && !last.isFlush()) {
+            final long remaining = deadline - System.nanoTime();
+
+            // Requests queued at the same time are always taken, even after the deadline.
+            last = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+
+            if (last == null)
+                break;
+
+            batch.add(last);
+        }
+
+        if (last == CLOSE) {
+            // Nothing is queued after the close request, so the batch holds all remaining requests.
+            batch.remove(batch.size() - 1);
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private void writeBatch(final List<Request> batch) {
+        // Only the latest meta data of a meta file is written, for all of its requests.
+        final Map<Path, List<Request>> requestsByPath = new LinkedHashMap<>();
+        final Map<Path, FileMetaData> latest = new LinkedHashMap<>();
+        final List<Request> flushes = new ArrayList<>();
+
+        for (final Request request : batch) {
+            if (request.isFlush()) {
+                flushes.add(request);
+
+                continue;
+            }
+
+            requestsByPath.computeIfAbsent(request.destination, path -> new ArrayList<>()).add(request);
+            latest.put(request.destination, request.metaData);
+        }
+
+        final Map<Path, IOException> failures = durability == Durability.SYNC
+                ? writeSynced(latest)
+                : writeUnsynced(latest);
+
+        requestsByPath.forEach((path, requests) -> {
+            final IOException failure = failures.get(path);
+
+            for (final Request request : requests) {
+                if (failure == null)
+                    request.future.complete(null);
+                else
+                    request.future.completeExceptionally(failure);
+            }
+        });
+
+        // A flush also fails for earlier batches since the previous flush, whose
+        // futures may have failed without anyone waiting for them.
+        if (failureSinceFlush == null && !failures.isEmpty())
+            failureSinceFlush = failures.values().iterator().next();
+
+        if (flushes.isEmpty())
+            return;
+
+        final Throwable failure = failureSinceFlush;
+
+        failureSinceFlush = null;
+
+        for (final Request flush : flushes) {
+            if (failure == null)
+                flush.future.complete(null);
+            else
+                flush.future.completeExceptionally(failure);
+        }
+    }
+
+    private Map<Path, IOException> writeUnsynced(final Map<Path, FileMetaData> metaData) {
+        final Map<Path, IOException> failures = new LinkedHashMap<>();
+
+        metaData.forEach((path, data) -> {
+            try (final FileChannel channel = open(path)) {
+                writeFully(channel, FileMetaDataWriter.encode(data, format));
+            } catch (final IOException ex) {
+                failures.put(path, ex);
+            }
+        });
+
+        return failures;
+    }
+
+    private Map<Path, IOException> writeSynced(final Map<Path, FileMetaData> metaData) {
+        final Map<Path, IOException> failures = new LinkedHashMap<>();
+        final Set<Path> directories = new LinkedHashSet<>();
+
+        final List<Path> paths = new ArrayList<>(metaData.keySet());
+
+        for (int first = 0; first < paths.size(); first += SYNC_GROUP_SIZE) {
+            final List<Path> group = paths.subList(first, Math.min(first + SYNC_GROUP_SIZE, paths.size()));
+            final Map<Path, FileChannel> channels = new LinkedHashMap<>();
+
+            try {
+                // Files of a group are all written before any of them is forced, which
+                // lets the file system commit them together.
+                for (final Path path : group) {
+                    try {
+                        final FileChannel channel = open(path);
+
+                        channels.put(path, channel);
+                        writeFully(channel, FileMetaDataWriter.encode(metaData.get(path), format));
+                    } catch (final IOException ex) {
+                        failures.put(path, ex);
+                    }
+                }
+
+                channels.forEach((path, channel) -> {
+                    if (failures.containsKey(path))
+                        return;
+
+                    try {
+                        channel.force(true);
+
+                        directories.add(path.getParent());
+                    } catch (final IOException ex) {
+                        failures.put(path, ex);
+                    }
+                });
+            } finally {
+                channels.forEach((path, channel) -> close(path, channel, failures));
+            }
+        }
+
+        // New meta files are durable only once their directory entries are.
+        for (final Path directory : directories)
+            syncDirectory(directory);
+
+        return failures;
+    }
+
+    private static FileChannel open(final Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void writeFully(final FileChannel channel, final byte[] content) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(content);
+
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private static void close(final Path path, final FileChannel channel, final Map<Path, IOException> failures) {
+        try {
+            channel.close();
+        } catch (final IOException ex) {
+            failures.putIfAbsent(path, ex);
+        }
+    }
+
+    private static void syncDirectory(final Path directory) {
+        if (directory == null)
+            return;
+
+        try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (final IOException ex) {
+            // Some platforms, like Windows, can't open or sync directories, in which
+            // case the directory entries are as durable as the file system makes them.
+        }
+    }
+
+    private static final class Request {
+
+        private final FileMetaData metaData;
+
+        private final Path destination;
+
+        private final CompletableFuture<Void> future;
+
+        private Request(final FileMetaData metaData, final Path destination, final CompletableFuture<Void> future) {
+            this.metaData    = metaData;
+            this.destination = destination;
+            this.future      = future;
+        }
+
+        private boolean isFlush() {
+            return metaData == null && future != null;
+        }
+
+    }
+
+    public static class BatchedMetaDataWriterBuilder {
+
+        private MetaDataFormat format = FileMetaDataWriter.getDefaultFormat();
+
+        private Durability durability = Durability.WRITE;
+
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+        private long maxDelay = DEFAULT_MAX_DELAY;
+
+        public BatchedMetaDataWriterBuilder() {}
+
+        public BatchedMetaDataWriterBuilder format(final MetaDataFormat format) {
+            this.format = checkNotNull(format);
+
+            return this;
+        }
+
+        public BatchedMetaDataWriterBuilder durability(final Durability durability) {
+            this.durability = checkNotNull(durability);
+
+            return this;
+        }
+
+        public BatchedMetaDataWriterBuilder maxBatchSize(final int maxBatchSize) {
+            checkArgument(maxBatchSize > 0, "Batch size must be positive!");
+
+            this.maxBatchSize = maxBatchSize;
+
+            return this;
+        }
+
+        /**
+         * Sets the maximum time, in milliseconds, that queued meta data waits for
+         * its batch to fill up.
+         */
+        public BatchedMetaDataWriterBuilder maxDelay(final long maxDelay) {
+            checkArgument(maxDelay >= 0, "Delay can't be negative!");
+
+            this.maxDelay = maxDelay;
+
+            return this;
+        }
+
+        public BatchedMetaDataWriter build() {
+            return new BatchedMetaDataWriter(this);
+        }
+
+    }
+
+}
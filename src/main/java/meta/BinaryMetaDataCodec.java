@@ -0,0 +1,215 @@
+package meta;
+
+import exceptions.FileNotSupportedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Encodes {@link FileMetaData} in the {@link MetaDataFormat#BINARY} format.
+ *
+ * <p>
+ * Every record starts with a header of the {@link #MAGIC} number, the format version
+ * and the length of the payload that follows it. The payload starts with a byte of
+ * flags telling which attributes are present, followed by the present attributes in
+ * the order of the flags. Strings are stored as their UTF-8 length followed by their
+ * bytes, numbers and dates as eight byte integers. Readers skip whatever is left of
+ * the payload after the attributes they know, so attributes can be appended in later
+ * versions without breaking older readers.
+ * </p>
+ */
+final class BinaryMetaDataCodec {
+
+    /**
+     * First four bytes of every binary record, {@code "SKMD"} in ASCII. JSON
+     * meta files can never start with them.
+     */
+    static final int MAGIC = 0x534B4D44;
+
+    static final byte VERSION = 1;
+
+    static final int HEADER_SIZE = 9;
+
+    /**
+     * Largest payload that is decoded, so a corrupt length can't exhaust the memory.
+     */
+    static final int MAX_PAYLOAD_SIZE = 1 << 24;
+
+    private static final int FILE_NAME = 1;
+
+    private static final int DESCRIPTION = 1 << 1;
+
+    private static final int MIME_TYPE = 1 << 2;
+
+    private static final int EXTENSION = 1 << 3;
+
+    private static final int FILE_VERSION = 1 << 4;
+
+    private static final int SAVE_DATE = 1 << 5;
+
+    private static final int COMPRESSION = 1 << 6;
+
+    private static final int UNCOMPRESSED_SIZE = 1 << 7;
+
+    private BinaryMetaDataCodec() {}
+
+    static byte[] encode(final FileMetaData metaData) {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+
+        try (final DataOutputStream output = new DataOutputStream(payload)) {
+            output.writeByte(flagsOf(metaData));
+
+            writeString(output, metaData.getFileName());
+            writeString(output, metaData.getDescription());
+            writeString(output, metaData.getMimeType());
+            writeString(output, metaData.getExtension());
+
+            if (metaData.getVersion() != null)
+                output.writeLong(metaData.getVersion());
+
+            if (metaData.getSaveDate() != null)
+                output.writeLong(metaData.getSaveDate().getTime());
+
+            writeString(output, metaData.getCompression());
+
+            if (metaData.getUncompressedSize() != null)
+                output.writeLong(metaData.getUncompressedSize());
+        } catch (final IOException ex) {
+            // Never thrown by a byte array stream.
+            throw new UncheckedIOException(ex);
+        }
+
+        final ByteArrayOutputStream record = new ByteArrayOutputStream(HEADER_SIZE + payload.size());
+
+        try (final DataOutputStream output = new DataOutputStream(record)) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeInt(payload.size());
+
+            payload.writeTo(output);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return record.toByteArray();
+    }
+
+    /**
+     * Decodes a single record from the {@code input}, which must be positioned at
+     * the start of its header.
+     *
+     * @exception FileNotSupportedException if the record isn't binary meta data
+     * or was written by a newer, incompatible version
+     * @exception IOException if the record can't be read or is corrupt
+     */
+    static FileMetaData decode(final InputStream input) throws IOException {
+        final DataInputStream data = new DataInputStream(input);
+
+        if (data.readInt() != MAGIC)
+            throw new FileNotSupportedException("Meta data isn't in the binary format!");
+
+        final byte version = data.readByte();
+
+        if (version > VERSION)
+            throw new FileNotSupportedException(String.format("Meta data version %d isn't supported", version));
+
+        final int length = data.readInt();
+
+        if (length < 0 || length > MAX_PAYLOAD_SIZE)
+            throw new IOException(String.format("Meta data record has an invalid length: %d", length));
+
+        final byte[] payload = new byte[length];
+
+        data.readFully(payload);
+
+        return decodePayload(payload);
+    }
+
+    private static FileMetaData decodePayload(final byte[] payload) throws IOException {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        final FileMetaData.FileMetaDataBuilder builder = new FileMetaData.FileMetaDataBuilder();
+
+        final int flags = input.readUnsignedByte();
+
+        if ((flags & FILE_NAME) != 0)
+            builder.fileName(readString(input));
+
+        if ((flags & DESCRIPTION) != 0)
+            builder.description(readString(input));
+
+        if ((flags & MIME_TYPE) != 0)
+            builder.mimeType(readString(input));
+
+        if ((flags & EXTENSION) != 0)
+            builder.extension(readString(input));
+
+        if ((flags & FILE_VERSION) != 0)
+            builder.version(input.readLong());
+
+        if ((flags & SAVE_DATE) != 0)
+            builder.saveDate(new Date(input.readLong()));
+
+        if ((flags & COMPRESSION) != 0)
+            builder.compression(readString(input));
+
+        if ((flags & UNCOMPRESSED_SIZE) != 0)
+            builder.uncompressedSize(input.readLong());
+
+        return builder.build();
+    }
+
+    /**
+     * Checks if the {@code header} starts with the {@link #MAGIC} number.
+     */
+    static boolean isBinary(final byte[] header, final int length) {
+        return length >= 4 && ((header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16
+                | (header[2] & 0xFF) << 8 | (header[3] & 0xFF)) == MAGIC;
+    }
+
+    private static int flagsOf(final FileMetaData metaData) {
+        return flag(metaData.getFileName(), FILE_NAME)
+                | flag(metaData.getDescription(), DESCRIPTION)
+                | flag(metaData.getMimeType(), MIME_TYPE)
+                | flag(metaData.getExtension(), EXTENSION)
+                | flag(metaData.getVersion(), FILE_VERSION)
+                | flag(metaData.getSaveDate(), SAVE_DATE)
+                | flag(metaData.getCompression(), COMPRESSION)
+                | flag(metaData.getUncompressedSize(), UNCOMPRESSED_SIZE);
+    }
+
+    private static int flag(final Object attribute, final int flag) {
+        return attribute == null ? 0 : flag;
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null)
+            return;
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+
+        // Strings are read from the payload, so they can't be longer than what's left of it.
+        if (length < 0 || length > input.available())
+            throw new IOException(String.format("Meta data string has an invalid length: %d", length));
+
+        final byte[] bytes = new byte[length];
+
+        input.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -19,13 +19,19 @@ public class FileMetaData implements Serializable {
 
     private final Date saveDate;
 
+    private final String compression;
+
+    private final Long uncompressedSize;
+
     private FileMetaData(final FileMetaDataBuilder builder) {
-        this.fileName    = builder.fileName;
-        this.mimeType    = builder.mimeType;
-        this.extension   = builder.extension;
-        this.version     = builder.version;
-        this.description = builder.description;
-        this.saveDate    = builder.saveDate;
+        this.fileName         = builder.fileName;
+        this.mimeType         = builder.mimeType;
+        this.extension        = builder.extension;
+        this.version          = builder.version;
+        this.description      = builder.description;
+        this.saveDate         = builder.saveDate;
+        this.compression      = builder.compression;
+        this.uncompressedSize = builder.uncompressedSize;
     }
 
     public String getFileName() {
@@ -52,6 +58,22 @@ public class FileMetaData implements Serializable {
         return saveDate;
     }
 
+    /**
+     * @return extension of the compression format the file is stored in,
+     * or null if the file isn't compressed
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return size in bytes of the file before it was compressed, or null if the
+     * file isn't compressed or its size wasn't recorded
+     */
+    public Long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
     @Override
     public String toString() {
         return "FileMetaData:[" +
@@ -60,7 +82,9 @@ public class FileMetaData implements Serializable {
                 formatVariable("extension", extension) +
                 formatVariable("version", version) +
                 formatVariable("description", description) +
-                formatVariable("saveData", saveDate) + "]";
+                formatVariable("saveData", saveDate) +
+                formatVariable("compression", compression) +
+                formatVariable("uncompressedSize", uncompressedSize) + "]";
     }
 
     private String formatVariable(final String variableName, final Object variable) {
@@ -81,8 +105,25 @@ public class FileMetaData implements Serializable {
 
         private Date saveDate;
 
+        private String compression;
+
+        private Long uncompressedSize;
+
         public FileMetaDataBuilder() {}
 
+        public FileMetaDataBuilder(final FileMetaData metaData) {
+            checkNotNull(metaData);
+
+            this.fileName         = metaData.fileName;
+            this.mimeType         = metaData.mimeType;
+            this.extension        = metaData.extension;
+            this.version          = metaData.version;
+            this.description      = metaData.description;
+            this.saveDate         = metaData.saveDate;
+            this.compression      = metaData.compression;
+            this.uncompressedSize = metaData.uncompressedSize;
+        }
+
         public FileMetaDataBuilder fileName(final String fileName) {
             this.fileName = checkNotNull(fileName);
 
@@ -119,6 +160,18 @@ public class FileMetaData implements Serializable {
             return this;
         }
 
+        public FileMetaDataBuilder compression(final String compression) {
+            this.compression = compression;
+
+            return this;
+        }
+
+        public FileMetaDataBuilder uncompressedSize(final Long uncompressedSize) {
+            this.uncompressedSize = uncompressedSize;
+
+            return this;
+        }
+
         public FileMetaData build() {
             return new FileMetaData(this);
         }
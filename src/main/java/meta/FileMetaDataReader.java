@@ -2,43 +2,228 @@ package meta;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import static util.Preconditions.checkFile;
+import static util.Preconditions.checkNotNull;
 
+/**
+ * Reads meta files written by {@link FileMetaDataWriter}.
+ *
+ * <p>
+ * The format of every meta file is recognized by its first bytes, so meta files
+ * written in the {@link MetaDataFormat#JSON} and {@link MetaDataFormat#BINARY}
+ * formats can be read by the same methods.
+ * </p>
+ *
+ * <p>
+ * Meta files are read with a single read into a buffer that every thread reuses,
+ * and JSON is parsed from that buffer by a streaming {@link JsonReader} with a cached
+ * type adapter, so reading a meta file allocates little more than the resulting
+ * {@link FileMetaData}. Many meta files can be read in parallel with
+ * {@link #readAll(Collection)}.
+ * </p>
+ */
 public class FileMetaDataReader {
 
     private static final Gson JSONParser = new GsonBuilder().setPrettyPrinting().create();
 
+    private static final TypeAdapter<FileMetaData> ADAPTER = JSONParser.getAdapter(FileMetaData.class);
+
+    private static final ThreadLocal<ReadBuffers> BUFFERS = ThreadLocal.withInitial(ReadBuffers::new);
+
     private FileMetaDataReader() {}
 
     public static FileMetaData readFileMetaData(final String metaFilePath) {
         checkFile(metaFilePath, "Invalid meta file path!");
 
-        return readFileMetaDataWorker(new File(metaFilePath));
+        return readFileMetaDataWorker(new File(metaFilePath).toPath());
     }
 
     public static FileMetaData readFileMetaData(final File metaFile) {
         checkFile(metaFile, "Invalid meta file!");
 
-        return readFileMetaDataWorker(metaFile);
+        return readFileMetaDataWorker(metaFile.toPath());
+    }
+
+    /**
+     * Reads the meta files on the specified {@code metaFilePaths} in parallel.
+     *
+     * @param metaFilePaths paths of the meta files
+     *
+     * @return meta data mapped by the path of its meta file, in the order of the
+     * specified {@code metaFilePaths}
+     *
+     * @exception NullPointerException if the specified {@code metaFilePaths} or one of
+     * the paths is null
+     * @exception exceptions.FileNotFoundException if one of the meta files wasn't found
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public static Map<Path, FileMetaData> readAll(final Collection<Path> metaFilePaths) {
+        checkNotNull(metaFilePaths);
+
+        return readAllWorker(metaFilePaths, false);
     }
 
-    private static FileMetaData readFileMetaDataWorker(final File metaFile) {
-        final String metaFileContent = readFile(metaFile);
+    /**
+     * Reads the meta files on the specified {@code metaFilePaths} in parallel, like
+     * {@link #readAll(Collection)}, but skips meta files that can't be read or
+     * parsed instead of failing all of them.
+     *
+     * @param metaFilePaths paths of the meta files
+     *
+     * @return meta data mapped by the path of its meta file, in the order of the
+     * specified {@code metaFilePaths}, without the meta files that were skipped
+     *
+     * @exception NullPointerException if the specified {@code metaFilePaths} or one of
+     * the paths is null
+     */
+    public static Map<Path, FileMetaData> readAllReadable(final Collection<Path> metaFilePaths) {
+        checkNotNull(metaFilePaths);
+
+        return readAllWorker(metaFilePaths, true);
+    }
+
+    private static Map<Path, FileMetaData> readAllWorker(final Collection<Path> metaFilePaths,
+                                                         final boolean skipUnreadable) {
+        final List<Path> paths = new ArrayList<>(metaFilePaths);
+        final FileMetaData[] metaData = new FileMetaData[paths.size()];
+        final boolean[] skipped = new boolean[paths.size()];
+
+        paths.forEach(path -> checkNotNull(path));
+
+        IntStream.range(0, paths.size())
+                .parallel()
+                .forEach(i -> {
+                    try {
+                        metaData[i] = readFileMetaDataWorker(paths.get(i));
+                    } catch (final JsonParseException | UncheckedIOException
+                            | exceptions.FileNotSupportedException | exceptions.FileNotFoundException ex) {
+                        if (!skipUnreadable)
+                            throw ex;
+
+                        skipped[i] = true;
+                    }
+                });
 
-        return JSONParser.fromJson(metaFileContent, FileMetaData.class);
+        final Map<Path, FileMetaData> result = new LinkedHashMap<>(paths.size() * 2);
+
+        for (int i = 0; i < paths.size(); i++) {
+            if (!skipped[i])
+                result.put(paths.get(i), metaData[i]);
+        }
+
+        return result;
     }
 
-    private static String readFile(final File file) {
-        try (final Scanner scanner = new Scanner(file)) {
-            return scanner.useDelimiter("\\Z").next();
-        } catch (final FileNotFoundException ex) {
+    private static FileMetaData readFileMetaDataWorker(final Path metaFile) {
+        final ReadBuffers buffers = BUFFERS.get();
+
+        try {
+            final ByteBuffer bytes = buffers.read(metaFile);
+
+            if (BinaryMetaDataCodec.isBinary(bytes.array(), bytes.limit()))
+                return BinaryMetaDataCodec.decode(new ByteArrayInputStream(bytes.array(), 0, bytes.limit()));
+
+            final CharBuffer chars = buffers.decode(bytes);
+
+            if (!chars.hasRemaining())
+                return null;
+
+            final JsonReader reader = new JsonReader(new CharArrayReader(chars.array(), 0, chars.limit()));
+
+            reader.setLenient(true);
+
+            return ADAPTER.read(reader);
+        } catch (final NoSuchFileException ex) {
             throw new exceptions.FileNotFoundException();
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Buffers of a single thread, grown to the largest meta file it has read.
+     */
+    private static final class ReadBuffers {
+
+        private static final int INITIAL_SIZE = 4 * 1024;
+
+        // Larger files aren't meta data, and reading them could exhaust the memory.
+        private static final int MAX_SIZE = 64 * 1024 * 1024;
+
+        // Meta files are written by a FileWriter, in the default charset.
+        private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_SIZE);
+
+        private CharBuffer chars = CharBuffer.allocate(INITIAL_SIZE);
+
+        private ByteBuffer read(final Path metaFile) throws IOException {
+            try (final FileChannel channel = FileChannel.open(metaFile, StandardOpenOption.READ)) {
+                final long size = channel.size();
+
+                if (size > MAX_SIZE)
+                    throw new IOException(String.format("Meta file: %s is too large", metaFile));
+
+                if (size > bytes.capacity())
+                    bytes = ByteBuffer.allocate((int) size);
+
+                bytes.clear();
+
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes) <= 0)
+                        break;
+                }
+
+                bytes.flip();
+
+                return bytes;
+            }
         }
+
+        private CharBuffer decode(final ByteBuffer input) {
+            final int capacity = (int) Math.ceil(input.remaining() * (double) decoder.maxCharsPerByte());
+
+            if (capacity > chars.capacity())
+                chars = CharBuffer.allocate(capacity);
+
+            chars.clear();
+
+            decoder.reset();
+            decoder.decode(input, chars, true);
+            decoder.flush(chars);
+
+            chars.flip();
+
+            return chars;
+        }
+
     }
 
 }
@@ -4,42 +4,96 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 
 import static util.Preconditions.checkFile;
 import static util.Preconditions.checkNotNull;
 
+/**
+ * Writes {@link FileMetaData} to meta files, in the {@link MetaDataFormat#JSON}
+ * format unless another format is chosen per call or with
+ * {@link #setDefaultFormat(MetaDataFormat)}.
+ *
+ * <p>
+ * Every call writes a single meta file synchronously. Many meta files are written
+ * faster by a {@link BatchedMetaDataWriter}, which writes them in batches on a
+ * background thread.
+ * </p>
+ */
 public class FileMetaDataWriter {
 
     private static final Gson JSONParser = new GsonBuilder().setPrettyPrinting().create();
 
+    private static volatile MetaDataFormat defaultFormat = MetaDataFormat.JSON;
+
     private FileMetaDataWriter() {}
 
     public static void writeFileMetaData(final FileMetaData metaData, final String destinationPath) {
+        writeFileMetaData(metaData, destinationPath, defaultFormat);
+    }
+
+    public static void writeFileMetaData(final FileMetaData metaData, final String destinationPath,
+                                         final MetaDataFormat format) {
         checkNotNull(metaData);
         checkNotNull(destinationPath);
+        checkNotNull(format);
 
-        writeFileMetaDataWorker(metaData, destinationPath);
+        writeFileMetaDataWorker(metaData, destinationPath, format);
     }
 
     // override destination method
     public static void writeFileMetaData(final FileMetaData metaData, final File destination) {
+        writeFileMetaData(metaData, destination, defaultFormat);
+    }
+
+    public static void writeFileMetaData(final FileMetaData metaData, final File destination,
+                                         final MetaDataFormat format) {
         checkNotNull(metaData);
         checkFile(destination, "Invalid destination file!");
+        checkNotNull(format);
 
-        writeFileMetaDataWorker(metaData, destination.getAbsolutePath());
+        writeFileMetaDataWorker(metaData, destination.getAbsolutePath(), format);
     }
 
-    private static void writeFileMetaDataWorker(final FileMetaData metaData, final String destinationPath) {
-        final String fileMetaDataJSON = JSONParser.toJson(metaData);
-
-        try (final PrintWriter writer = new PrintWriter(new FileWriter(new File(destinationPath)))) {
-            writer.write(fileMetaDataJSON);
+    private static void writeFileMetaDataWorker(final FileMetaData metaData, final String destinationPath,
+                                                final MetaDataFormat format) {
+        try (final OutputStream output = new FileOutputStream(destinationPath)) {
+            output.write(encode(metaData, format));
         } catch (final IOException ex) {
-            ex.printStackTrace();
+            throw new UncheckedIOException(ex);
         }
     }
 
+    /**
+     * @return content of the meta file of the {@code metaData} in the specified {@code format}
+     */
+    static byte[] encode(final FileMetaData metaData, final MetaDataFormat format) {
+        if (format == MetaDataFormat.BINARY)
+            return BinaryMetaDataCodec.encode(metaData);
+
+        // JSON is written in the default charset, like it was by a FileWriter.
+        return JSONParser.toJson(metaData).getBytes(Charset.defaultCharset());
+    }
+
+    /**
+     * Sets the format used by the methods that don't take a format. Meta files
+     * that were already written keep their format, since
+     * {@link FileMetaDataReader} reads both formats.
+     *
+     * @param format format of the meta files written from now on
+     *
+     * @exception NullPointerException if the specified {@code format} is null
+     */
+    public static void setDefaultFormat(final MetaDataFormat format) {
+        defaultFormat = checkNotNull(format);
+    }
+
+    public static MetaDataFormat getDefaultFormat() {
+        return defaultFormat;
+    }
+
 }
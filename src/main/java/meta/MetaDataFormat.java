@@ -0,0 +1,26 @@
+package meta;
+
+/**
+ * Formats that {@link FileMetaData} can be stored in.
+ *
+ * <p>
+ * {@link FileMetaDataReader} recognizes the format of every meta file on its own,
+ * so meta files of both formats can be mixed freely.
+ * </p>
+ *
+ * @see FileMetaDataWriter#setDefaultFormat(MetaDataFormat)
+ */
+public enum MetaDataFormat {
+
+    /**
+     * Pretty-printed JSON that is easy to read and edit by hand.
+     */
+    JSON,
+
+    /**
+     * Compact binary encoding that is several times smaller and faster to parse
+     * than JSON, intended for large numbers of meta files.
+     */
+    BINARY
+
+}
@@ -0,0 +1,307 @@
+package meta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Persisted, memory-mapped hash index of the records of a {@link MetaDataStore} log.
+ *
+ * <p>
+ * The index file is an open addressing hash table with linear probing, mapped with
+ * {@link FileChannel#map(FileChannel.MapMode, long, long)}, so opening it takes the
+ * same time regardless of its size and only the pages that are probed are ever read
+ * from the disk. Every slot holds the 64 bit hash of a path and the position of its
+ * record in the log, together with a summary of the meta data: the version and save
+ * date, and the hashes of the file name and extension. Queries over these attributes
+ * can therefore be answered, or at least narrowed down, without reading the log.
+ * </p>
+ *
+ * <p>
+ * The header records the length of the log the index was written for, together with
+ * a checksum of the end of the log. An index that doesn't match its log is ignored.
+ * The table is kept at most half full and, since a mapping is limited to 2 GB, holds
+ * at most about 22 million records.
+ * </p>
+ */
+final class MetaDataIndex {
+
+    /**
+     * Stored in the summary of records without a version or save date.
+     */
+    static final long ABSENT = Long.MIN_VALUE;
+
+    private static final int MAGIC = 0x534B4D49;
+
+    private static final byte VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final int SLOT_SIZE = 48;
+
+    private static final int MIN_SLOTS = 16;
+
+    private final ByteBuffer buffer;
+
+    private final int mask;
+
+    private final int count;
+
+    private final long logLength;
+
+    private final long garbage;
+
+    private final long logChecksum;
+
+    private MetaDataIndex(final ByteBuffer buffer, final int slots) {
+        this.buffer      = buffer;
+        this.mask        = slots - 1;
+        this.count       = buffer.getInt(12);
+        this.logLength   = buffer.getLong(16);
+        this.garbage     = buffer.getLong(24);
+        this.logChecksum = buffer.getLong(32);
+    }
+
+    /**
+     * Maps the index file on the specified {@code path}.
+     *
+     * @return mapped index or null if the file doesn't exist or isn't a valid index
+     */
+    static MetaDataIndex open(final Path path) throws IOException {
+        if (!Files.isRegularFile(path))
+            return null;
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+                return null;
+
+            // The mapping stays valid after the channel is closed.
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION)
+                return null;
+
+            final int slots = buffer.getInt(8);
+
+            if (slots < MIN_SLOTS || Integer.bitCount(slots) != 1 || HEADER_SIZE + (long) slots * SLOT_SIZE != size)
+                return null;
+
+            return new MetaDataIndex(buffer, slots);
+        }
+    }
+
+    /**
+     * Writes an index of the specified {@code entries} to the {@code path}, replacing
+     * the previous index atomically.
+     *
+     * @return false if there are too many entries for a single index, in which case
+     * the previous index is deleted
+     */
+    static boolean write(final Path path, final Collection<Entry> entries, final long logLength,
+                         final long garbage, final long logChecksum) throws IOException {
+        final long slots = Math.max(MIN_SLOTS, Long.highestOneBit(Math.max(entries.size(), 1) * 2L - 1) << 1);
+        final long size = HEADER_SIZE + slots * SLOT_SIZE;
+
+        if (size > Integer.MAX_VALUE) {
+            Files.deleteIfExists(path);
+
+            return false;
+        }
+
+        final Path temporary = Paths.get(path.toString() + ".tmp");
+        final int mask = (int) slots - 1;
+
+        try (final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            buffer.putInt(0, MAGIC);
+            buffer.put(4, VERSION);
+            buffer.putInt(8, (int) slots);
+            buffer.putInt(12, entries.size());
+            buffer.putLong(16, logLength);
+            buffer.putLong(24, garbage);
+            buffer.putLong(32, logChecksum);
+
+            for (final Entry entry : entries) {
+                int slot = slotOf(entry.keyHash, mask);
+
+                // A new file is filled with zeros, which marks empty slots.
+                while (buffer.getLong(positionOf(slot)) != 0)
+                    slot = (slot + 1) & mask;
+
+                entry.writeTo(buffer, positionOf(slot));
+            }
+
+            buffer.force();
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return true;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getLogLength() {
+        return logLength;
+    }
+
+    long getGarbage() {
+        return garbage;
+    }
+
+    long getLogChecksum() {
+        return logChecksum;
+    }
+
+    /**
+     * Returns the first entry with the specified {@code keyHash} accepted by the
+     * {@code predicate}. Different paths can share a hash, so the predicate has to
+     * check that the entry belongs to the wanted path.
+     *
+     * @return accepted entry or null if there is none
+     */
+    Entry find(final long keyHash, final Predicate<Entry> predicate) {
+        for (int slot = slotOf(keyHash, mask); ; slot = (slot + 1) & mask) {
+            final long hash = buffer.getLong(positionOf(slot));
+
+            if (hash == 0)
+                return null;
+
+            if (hash == keyHash) {
+                final Entry entry = Entry.readFrom(buffer, positionOf(slot));
+
+                if (predicate.test(entry))
+                    return entry;
+            }
+        }
+    }
+
+    void forEach(final Consumer<Entry> consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (buffer.getLong(positionOf(slot)) != 0)
+                consumer.accept(Entry.readFrom(buffer, positionOf(slot)));
+        }
+    }
+
+    private static int positionOf(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static int slotOf(final long hash, final int mask) {
+        final long mixed = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+
+        return (int) (mixed ^ (mixed >>> 33)) & mask;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the {@code key}, which is never zero. The hash is persisted,
+     * so it must never change.
+     */
+    static long hash(final String key) {
+        long hash = 0xCBF29CE484222325L;
+
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Hash of an attribute of the summary, which is zero only for absent attributes.
+     */
+    static int attributeHash(final String attribute) {
+        if (attribute == null)
+            return 0;
+
+        final int hash = attribute.hashCode();
+
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Position of a record in the log with the summary of its meta data.
+     */
+    static final class Entry {
+
+        final long keyHash;
+
+        final long offset;
+
+        final int size;
+
+        // Size of the type and key that precede the value in the record body.
+        final int keySize;
+
+        final long version;
+
+        final long saveDate;
+
+        final int nameHash;
+
+        final int extensionHash;
+
+        Entry(final long keyHash, final long offset, final int size, final int keySize, final long version,
+              final long saveDate, final int nameHash, final int extensionHash) {
+            this.keyHash       = keyHash;
+            this.offset        = offset;
+            this.size          = size;
+            this.keySize       = keySize;
+            this.version       = version;
+            this.saveDate      = saveDate;
+            this.nameHash      = nameHash;
+            this.extensionHash = extensionHash;
+        }
+
+        static Entry of(final String key, final long offset, final int size, final int keySize,
+                        final FileMetaData metaData) {
+            return new Entry(hash(key), offset, size, keySize,
+                    metaData.getVersion() == null ? ABSENT : metaData.getVersion(),
+                    metaData.getSaveDate() == null ? ABSENT : metaData.getSaveDate().getTime(),
+                    attributeHash(metaData.getFileName()),
+                    attributeHash(metaData.getExtension()));
+        }
+
+        /**
+         * @return copy of this entry for a record moved to the specified {@code offset}
+         */
+        Entry movedTo(final long offset) {
+            return new Entry(keyHash, offset, size, keySize, version, saveDate, nameHash, extensionHash);
+        }
+
+        private static Entry readFrom(final ByteBuffer buffer, final int position) {
+            return new Entry(buffer.getLong(position), buffer.getLong(position + 8), buffer.getInt(position + 16),
+                    buffer.getInt(position + 20), buffer.getLong(position + 24), buffer.getLong(position + 32),
+                    buffer.getInt(position + 40), buffer.getInt(position + 44));
+        }
+
+        private void writeTo(final ByteBuffer buffer, final int position) {
+            buffer.putLong(position, keyHash);
+            buffer.putLong(position + 8, offset);
+            buffer.putInt(position + 16, size);
+            buffer.putInt(position + 20, keySize);
+            buffer.putLong(position + 24, version);
+            buffer.putLong(position + 32, saveDate);
+            buffer.putInt(position + 40, nameHash);
+            buffer.putInt(position + 44, extensionHash);
+        }
+
+    }
+
+}
@@ -0,0 +1,298 @@
+package meta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static util.Preconditions.*;
+
+/**
+ * Query over the attributes of {@link FileMetaData}.
+ *
+ * <p>
+ * A query is a conjunction of predicates: meta data matches only if it satisfies
+ * every predicate that was set. File names and extensions are compared exactly,
+ * while MIME types are compared regardless of case. Versions and save dates match
+ * inclusive ranges, with either end left open. Description terms match meta data
+ * whose description contains all of the terms as words, regardless of case and
+ * punctuation. A query without predicates matches all meta data. For example,
+ * all PDF files saved during the last week are found with
+ *
+ * <pre>{@code
+ * MetaDataQuery query = new MetaDataQuery.MetaDataQueryBuilder()
+ *         .mimeType("application/pdf")
+ *         .savedBetween(weekAgo, now)
+ *         .build();
+ *
+ * List<File> files = fileSystem.findFileByMetaData(query);
+ * }</pre>
+ * </p>
+ *
+ * @see MetaDataQueryIndex
+ */
+public class MetaDataQuery {
+
+    private final String fileName;
+
+    private final String extension;
+
+    private final String mimeType;
+
+    private final Long versionFrom;
+
+    private final Long versionTo;
+
+    private final Long savedFrom;
+
+    private final Long savedTo;
+
+    private final Set<String> descriptionTerms;
+
+    private MetaDataQuery(final MetaDataQueryBuilder builder) {
+        this.fileName         = builder.fileName;
+        this.extension        = builder.extension;
+        this.mimeType         = builder.mimeType;
+        this.versionFrom      = builder.versionFrom;
+        this.versionTo        = builder.versionTo;
+        this.savedFrom        = builder.savedFrom;
+        this.savedTo          = builder.savedTo;
+        this.descriptionTerms = Collections.unmodifiableSet(new LinkedHashSet<>(builder.descriptionTerms));
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return MIME type in lower case, or null if it isn't part of the query
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public Long getVersionFrom() {
+        return versionFrom;
+    }
+
+    public Long getVersionTo() {
+        return versionTo;
+    }
+
+    /**
+     * @return first matching save date in milliseconds, or null if the range is open
+     */
+    public Long getSavedFrom() {
+        return savedFrom;
+    }
+
+    /**
+     * @return last matching save date in milliseconds, or null if the range is open
+     */
+    public Long getSavedTo() {
+        return savedTo;
+    }
+
+    /**
+     * @return normalized words that the description has to contain
+     */
+    public Set<String> getDescriptionTerms() {
+        return descriptionTerms;
+    }
+
+    boolean hasVersionRange() {
+        return versionFrom != null || versionTo != null;
+    }
+
+    boolean hasSaveDateRange() {
+        return savedFrom != null || savedTo != null;
+    }
+
+    /**
+     * Checks if the specified {@code metaData} satisfies every predicate of this query.
+     *
+     * @exception NullPointerException if the specified {@code metaData} is null
+     */
+    public boolean matches(final FileMetaData metaData) {
+        checkNotNull(metaData);
+
+        if (fileName != null && !fileName.equals(metaData.getFileName()))
+            return false;
+
+        if (extension != null && !extension.equals(metaData.getExtension()))
+            return false;
+
+        if (mimeType != null && !mimeType.equals(normalizeMimeType(metaData.getMimeType())))
+            return false;
+
+        if (hasVersionRange() && !inRange(metaData.getVersion(), versionFrom, versionTo))
+            return false;
+
+        final Long saveDate = metaData.getSaveDate() == null ? null : metaData.getSaveDate().getTime();
+
+        if (hasSaveDateRange() && !inRange(saveDate, savedFrom, savedTo))
+            return false;
+
+        return descriptionTerms.isEmpty() || tokenize(metaData.getDescription()).containsAll(descriptionTerms);
+    }
+
+    private static boolean inRange(final Long value, final Long from, final Long to) {
+        return value != null && (from == null || value >= from) && (to == null || value <= to);
+    }
+
+    static String normalizeMimeType(final String mimeType) {
+        return mimeType == null ? null : mimeType.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits the {@code text} into lower case words of letters and digits.
+     *
+     * @return words of the text, or an empty set if the text is null
+     */
+    static Set<String> tokenize(final String text) {
+        if (text == null)
+            return Collections.emptySet();
+
+        final Set<String> tokens = new LinkedHashSet<>();
+
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (wordCharacter && start < 0)
+                start = i;
+            else if (!wordCharacter && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        final List<String> predicates = new ArrayList<>();
+
+        if (fileName != null)
+            predicates.add("fileName = " + fileName);
+
+        if (extension != null)
+            predicates.add("extension = " + extension);
+
+        if (mimeType != null)
+            predicates.add("mimeType = " + mimeType);
+
+        if (hasVersionRange())
+            predicates.add(String.format("version in [%s, %s]", bound(versionFrom), bound(versionTo)));
+
+        if (hasSaveDateRange())
+            predicates.add(String.format("saveDate in [%s, %s]", bound(savedFrom), bound(savedTo)));
+
+        if (!descriptionTerms.isEmpty())
+            predicates.add("description contains " + descriptionTerms);
+
+        return String.format("MetaDataQuery[%s]", String.join(" and ", predicates));
+    }
+
+    private static String bound(final Long bound) {
+        return bound == null ? "*" : bound.toString();
+    }
+
+    public static class MetaDataQueryBuilder {
+
+        private String fileName;
+
+        private String extension;
+
+        private String mimeType;
+
+        private Long versionFrom;
+
+        private Long versionTo;
+
+        private Long savedFrom;
+
+        private Long savedTo;
+
+        private final Set<String> descriptionTerms = new LinkedHashSet<>();
+
+        public MetaDataQueryBuilder() {}
+
+        public MetaDataQueryBuilder fileName(final String fileName) {
+            this.fileName = checkNotNull(fileName);
+
+            return this;
+        }
+
+        public MetaDataQueryBuilder extension(final String extension) {
+            this.extension = checkNotNull(extension);
+
+            return this;
+        }
+
+        public MetaDataQueryBuilder mimeType(final String mimeType) {
+            this.mimeType = normalizeMimeType(checkNotNull(mimeType));
+
+            return this;
+        }
+
+        public MetaDataQueryBuilder version(final long version) {
+            return versionBetween(version, version);
+        }
+
+        /**
+         * Matches versions between the specified bounds, inclusive. A null bound
+         * leaves that end of the range open.
+         */
+        public MetaDataQueryBuilder versionBetween(final Long from, final Long to) {
+            checkArgument(from == null || to == null || from <= to, "Version range is empty!");
+
+            this.versionFrom = from;
+            this.versionTo = to;
+
+            return this;
+        }
+
+        /**
+         * Matches save dates between the specified dates, inclusive. A null date
+         * leaves that end of the range open.
+         */
+        public MetaDataQueryBuilder savedBetween(final Date from, final Date to) {
+            checkArgument(from == null || to == null || !from.after(to), "Save date range is empty!");
+
+            this.savedFrom = from == null ? null : from.getTime();
+            this.savedTo = to == null ? null : to.getTime();
+
+            return this;
+        }
+
+        /**
+         * Matches descriptions that contain every word of the specified {@code text}.
+         * Calling this method again adds more words that have to be contained.
+         */
+        public MetaDataQueryBuilder descriptionContains(final String text) {
+            final Set<String> terms = tokenize(checkNotNull(text));
+
+            checkArgument(!terms.isEmpty(), "Description text has no words!");
+
+            descriptionTerms.addAll(terms);
+
+            return this;
+        }
+
+        public MetaDataQuery build() {
+            return new MetaDataQuery(this);
+        }
+
+    }
+
+}
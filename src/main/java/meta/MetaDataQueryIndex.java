@@ -0,0 +1,244 @@
+package meta;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import static util.Preconditions.checkNotNull;
+
+/**
+ * Concurrent in-memory secondary indexes over the {@link FileMetaData} of files,
+ * which answer {@link MetaDataQuery queries} without looking at every file.
+ *
+ * <p>
+ * File names, extensions and MIME types are kept in hash indexes, versions and save
+ * dates in sorted skip list indexes, and the words of descriptions in an inverted
+ * index. A query starts from the most selective of its predicates: exact matches
+ * and description words are single lookups, and a range is scanned only if it
+ * covers fewer files than the best candidates found so far. The candidates are
+ * then checked against the whole query, so finding all PDF files saved last week
+ * reads the save dates of that week, not the meta data of every file. Only queries
+ * without predicates visit all files.
+ * </p>
+ *
+ * <p>
+ * Files are identified by keys of type {@code K}, which must have proper
+ * {@code equals} and {@code hashCode} methods. Storing meta data of a file that is
+ * already indexed replaces its old meta data in every index. All methods can be
+ * called concurrently. Writes are serialized, while queries run in parallel with
+ * them and never return a file whose current meta data doesn't match.
+ * </p>
+ *
+ * @see MetaDataQuery
+ */
+public class MetaDataQueryIndex<K> {
+
+    private final Map<K, FileMetaData> metaData = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<K>> byFileName = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<K>> byExtension = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<K>> byMimeType = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<K>> byDescriptionTerm = new ConcurrentHashMap<>();
+
+    private final NavigableMap<Long, Set<K>> byVersion = new ConcurrentSkipListMap<>();
+
+    private final NavigableMap<Long, Set<K>> bySaveDate = new ConcurrentSkipListMap<>();
+
+    /**
+     * Indexes the {@code metaData} of the file with the specified {@code key},
+     * replacing its previous meta data.
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     */
+    public synchronized void put(final K key, final FileMetaData metaData) {
+        checkNotNull(key);
+        checkNotNull(metaData);
+
+        final FileMetaData previous = this.metaData.put(key, metaData);
+
+        if (previous != null)
+            unindex(key, previous);
+
+        index(key, metaData);
+    }
+
+    /**
+     * Removes the file with the specified {@code key} from all indexes.
+     *
+     * @return true if the file was indexed
+     *
+     * @exception NullPointerException if the specified {@code key} is null
+     */
+    public synchronized boolean remove(final K key) {
+        checkNotNull(key);
+
+        final FileMetaData previous = metaData.remove(key);
+
+        if (previous == null)
+            return false;
+
+        unindex(key, previous);
+
+        return true;
+    }
+
+    public synchronized void clear() {
+        metaData.clear();
+        byFileName.clear();
+        byExtension.clear();
+        byMimeType.clear();
+        byDescriptionTerm.clear();
+        byVersion.clear();
+        bySaveDate.clear();
+    }
+
+    /**
+     * @return indexed meta data of the file with the specified {@code key}, or null
+     * if the file isn't indexed
+     */
+    public FileMetaData get(final K key) {
+        return metaData.get(checkNotNull(key));
+    }
+
+    public int size() {
+        return metaData.size();
+    }
+
+    private void index(final K key, final FileMetaData metaData) {
+        put(byFileName, metaData.getFileName(), key);
+        put(byExtension, metaData.getExtension(), key);
+        put(byMimeType, MetaDataQuery.normalizeMimeType(metaData.getMimeType()), key);
+        put(byVersion, metaData.getVersion(), key);
+        put(bySaveDate, saveDateOf(metaData), key);
+
+        MetaDataQuery.tokenize(metaData.getDescription()).forEach(term -> put(byDescriptionTerm, term, key));
+    }
+
+    private void unindex(final K key, final FileMetaData metaData) {
+        remove(byFileName, metaData.getFileName(), key);
+        remove(byExtension, metaData.getExtension(), key);
+        remove(byMimeType, MetaDataQuery.normalizeMimeType(metaData.getMimeType()), key);
+        remove(byVersion, metaData.getVersion(), key);
+        remove(bySaveDate, saveDateOf(metaData), key);
+
+        MetaDataQuery.tokenize(metaData.getDescription()).forEach(term -> remove(byDescriptionTerm, term, key));
+    }
+
+    private static Long saveDateOf(final FileMetaData metaData) {
+        return metaData.getSaveDate() == null ? null : metaData.getSaveDate().getTime();
+    }
+
+    private static <A, K> void put(final Map<A, Set<K>> index, final A attribute, final K key) {
+        if (attribute != null)
+            index.computeIfAbsent(attribute, ignored -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private static <A, K> void remove(final Map<A, Set<K>> index, final A attribute, final K key) {
+        if (attribute == null)
+            return;
+
+        index.computeIfPresent(attribute, (ignored, keys) -> {
+            keys.remove(key);
+
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Finds the files whose meta data matches the specified {@code query}.
+     *
+     * @return keys of the matching files, in no particular order
+     *
+     * @exception NullPointerException if the specified {@code query} is null
+     */
+    public List<K> find(final MetaDataQuery query) {
+        checkNotNull(query);
+
+        final Collection<K> candidates = candidates(query);
+
+        return candidates.stream()
+                .filter(key -> {
+                    final FileMetaData current = metaData.get(key);
+
+                    return current != null && query.matches(current);
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Chooses the smallest set of files that contains all matches of the {@code query}.
+     */
+    private Collection<K> candidates(final MetaDataQuery query) {
+        Collection<K> candidates = null;
+
+        if (query.getFileName() != null)
+            candidates = smaller(candidates, lookup(byFileName, query.getFileName()));
+
+        if (query.getExtension() != null)
+            candidates = smaller(candidates, lookup(byExtension, query.getExtension()));
+
+        if (query.getMimeType() != null)
+            candidates = smaller(candidates, lookup(byMimeType, query.getMimeType()));
+
+        for (final String term : query.getDescriptionTerms())
+            candidates = smaller(candidates, lookup(byDescriptionTerm, term));
+
+        if (query.hasSaveDateRange())
+            candidates = smaller(candidates, scan(bySaveDate, query.getSavedFrom(), query.getSavedTo(), candidates));
+
+        if (query.hasVersionRange())
+            candidates = smaller(candidates, scan(byVersion, query.getVersionFrom(), query.getVersionTo(), candidates));
+
+        return candidates == null ? metaData.keySet() : candidates;
+    }
+
+    private static <K> Set<K> lookup(final Map<String, Set<K>> index, final String attribute) {
+        final Set<K> keys = index.get(attribute);
+
+        return keys == null ? Collections.emptySet() : keys;
+    }
+
+    private static <K> Collection<K> smaller(final Collection<K> candidates, final Collection<K> keys) {
+        if (keys == null)
+            return candidates;
+
+        return candidates == null || keys.size() < candidates.size() ? keys : candidates;
+    }
+
+    /**
+     * Collects the files within the range of the sorted {@code index}, unless there
+     * are more of them than the current {@code candidates}.
+     *
+     * @return files within the range, or null if the range isn't more selective
+     */
+    private static <K> Set<K> scan(final NavigableMap<Long, Set<K>> index, final Long from, final Long to,
+                                   final Collection<K> candidates) {
+        final long limit = candidates == null ? Long.MAX_VALUE : candidates.size();
+
+        final NavigableMap<Long, Set<K>> range = index.subMap(
+                from == null ? Long.MIN_VALUE : from, true,
+                to == null ? Long.MAX_VALUE : to, true);
+
+        final Set<K> keys = new HashSet<>();
+
+        for (final Set<K> rangeKeys : range.values()) {
+            keys.addAll(rangeKeys);
+
+            if (keys.size() >= limit)
+                return null;
+        }
+
+        return keys;
+    }
+
+}
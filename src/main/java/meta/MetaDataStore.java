@@ -0,0 +1,1083 @@
+package meta;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import static util.Preconditions.*;
+
+/**
+ * Keeps the {@link FileMetaData} of many files in a single file, instead of a
+ * meta file per file.
+ *
+ * <p>
+ * Records are appended to a log in the {@link MetaDataFormat#BINARY} format and are
+ * never modified in place. A hash index maps the path of every file to the position
+ * of its latest record, so {@link #get(String)} costs a hash lookup and a single
+ * positional read, without opening any file. Replacing or removing meta data leaves
+ * the old record behind as garbage, which {@link #compact()} removes by rewriting the
+ * live records into a new log. Unless disabled, compaction runs automatically once
+ * the garbage exceeds the compaction ratio of the log.
+ * </p>
+ *
+ * <p>
+ * The index is persisted next to the log, in a file with the {@link #INDEX_EXTENSION}
+ * extension, when the store is closed or compacted. Opening the store maps that file
+ * into memory instead of reading the log, and reads only the records appended after
+ * the index was written, so opening a store takes milliseconds regardless of its
+ * size. Records that were never touched are never read. Entries of the index also
+ * summarize the name, extension, version and save date of the meta data, so
+ * {@link #findByName(String)}, {@link #findByExtension(String)} and
+ * {@link #findSavedBetween(Date, Date)} read only the records that match. If the
+ * index is missing or doesn't match the log, the whole log is read instead.
+ * </p>
+ *
+ * <p>
+ * Every record carries a checksum. If the process dies in the middle of a write,
+ * the incomplete record at the end of the log is discarded when the store is opened
+ * again. Records are handed to the operating system when they are written, but are
+ * forced to the disk only by {@link #sync()} and {@link #close()}. For example
+ *
+ * <pre>{@code
+ * try (MetaDataStore store = new MetaDataStore.MetaDataStoreBuilder(Paths.get("catalog.meta")).build()) {
+ *     store.put("documents/report.pdf", metaData);
+ *
+ *     FileMetaData stored = store.get("documents/report.pdf");
+ * }
+ * }</pre>
+ * </p>
+ *
+ * <p>
+ * All methods can be called concurrently. Reads run in parallel with each other,
+ * while writes and compaction are exclusive.
+ * </p>
+ */
+public class MetaDataStore implements Closeable {
+
+    /**
+     * Default ratio of garbage in the log that triggers automatic compaction.
+     */
+    public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+    /**
+     * Extension appended to the path of the log to get the path of its index.
+     */
+    public static final String INDEX_EXTENSION = ".idx";
+
+    /**
+     * Logs smaller than this are never compacted automatically.
+     */
+    private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+    private static final int MAGIC = 0x534B4D4C;
+
+    private static final byte VERSION = 1;
+
+    private static final int FILE_HEADER_SIZE = 5;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte PUT = 1;
+
+    private static final byte REMOVE = 2;
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private static final int SCAN_BATCH_SIZE = 1024;
+
+    private static final int LOG_CHECKSUM_SIZE = 64;
+
+    private final Path path;
+
+    private final Path indexPath;
+
+    private final double compactionRatio;
+
+    private final boolean autoCompact;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Held by scans for their whole duration, since compaction moves the records they read.
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+
+    // Entries of records written after the mapped index.
+    private final Map<String, MetaDataIndex.Entry> delta = new HashMap<>();
+
+    // Offsets of the mapped entries replaced or removed after the index was written.
+    private final Set<Long> shadowed = new HashSet<>();
+
+    private MetaDataIndex index;
+
+    private FileChannel channel;
+
+    private long size;
+
+    private long garbage;
+
+    private int count;
+
+    private boolean open;
+
+    private MetaDataStore(final MetaDataStoreBuilder builder) {
+        this.path            = builder.path;
+        this.indexPath       = Paths.get(builder.path.toString() + INDEX_EXTENSION);
+        this.compactionRatio = builder.compactionRatio;
+        this.autoCompact     = builder.autoCompact;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    private void open() throws IOException {
+        final Path parent = path.toAbsolutePath().getParent();
+
+        if (parent != null)
+            Files.createDirectories(parent);
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if (channel.size() == 0) {
+            writeFileHeader(channel);
+            Files.deleteIfExists(indexPath);
+
+            size = FILE_HEADER_SIZE;
+        } else {
+            checkFileHeader();
+
+            index = openIndex();
+
+            if (index != null) {
+                count = index.getCount();
+                garbage = index.getGarbage();
+            }
+
+            replay(index == null ? FILE_HEADER_SIZE : index.getLogLength());
+        }
+
+        open = true;
+    }
+
+    private static void writeFileHeader(final FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+
+        header.putInt(MAGIC).put(VERSION).flip();
+
+        writeFully(channel, header, 0);
+    }
+
+    private void checkFileHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+
+        if (channel.size() < FILE_HEADER_SIZE)
+            throw new IllegalStateException(String.format("%s isn't a meta data store!", path));
+
+        readFully(channel, header, 0);
+
+        if (header.getInt(0) != MAGIC)
+            throw new IllegalStateException(String.format("%s isn't a meta data store!", path));
+
+        checkState(header.get(4) <= VERSION,
+                String.format("Meta data store version %d isn't supported", header.get(4)));
+    }
+
+    /**
+     * @return mapped index or null if there is no index that matches the log
+     */
+    private MetaDataIndex openIndex() throws IOException {
+        final MetaDataIndex mapped = MetaDataIndex.open(indexPath);
+
+        if (mapped == null || mapped.getLogLength() > channel.size()
+                || logChecksum(mapped.getLogLength()) != mapped.getLogChecksum())
+            return null;
+
+        return mapped;
+    }
+
+    /**
+     * Applies the records written after the specified {@code position} to the index
+     * and truncates an incomplete record left at the end of the log.
+     */
+    private void replay(final long position) throws IOException {
+        final long length = channel.size();
+        final LogReader reader = new LogReader(position);
+
+        byte[] record;
+
+        while ((record = reader.next(length)) != null) {
+            final long offset = reader.position - record.length;
+            final String key = keyOf(record);
+
+            if (typeOf(record) == PUT)
+                putEntry(key, MetaDataIndex.Entry.of(key, offset, record.length, keySizeOf(record),
+                        decodeValue(record, keySizeOf(record))));
+            else
+                removeEntry(key, record.length);
+        }
+
+        if (reader.position < length)
+            channel.truncate(reader.position);
+
+        size = reader.position;
+    }
+
+    /**
+     * Stores the {@code metaData} of the file on the specified {@code path},
+     * replacing the meta data that was stored for it before.
+     *
+     * @param path path of the file the meta data belongs to
+     * @param metaData meta data of the file
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public void put(final String path, final FileMetaData metaData) {
+        checkNotNull(path);
+        checkNotNull(metaData);
+
+        write(PUT, path, metaData);
+    }
+
+    /**
+     * Removes the meta data of the file on the specified {@code path}.
+     *
+     * @param path path of the file the meta data belongs to
+     *
+     * @return true if meta data of the file was stored
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public boolean remove(final String path) {
+        checkNotNull(path);
+
+        return write(REMOVE, path, null);
+    }
+
+    private boolean write(final byte type, final String key, final FileMetaData metaData) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] value = metaData == null ? new byte[0] : BinaryMetaDataCodec.encode(metaData);
+        final int keySize = 1 + 4 + keyBytes.length;
+        final int bodyLength = keySize + value.length;
+
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodyLength);
+
+        record.putInt(bodyLength).putInt(0).put(type).putInt(keyBytes.length).put(keyBytes).put(value);
+        record.putInt(4, (int) checksum(record.array(), RECORD_HEADER_SIZE, bodyLength));
+        record.flip();
+
+        boolean compact = false;
+
+        lock.writeLock().lock();
+
+        try {
+            checkOpen();
+
+            if (type == REMOVE && lookup(key) == null)
+                return false;
+
+            final long offset = size;
+
+            writeFully(channel, record, offset);
+
+            size += record.limit();
+
+            final boolean replaced = type == PUT
+                    ? putEntry(key, MetaDataIndex.Entry.of(key, offset, record.limit(), keySize, metaData))
+                    : removeEntry(key, record.limit());
+
+            compact = autoCompact && size >= MIN_COMPACTION_SIZE && garbage > size * compactionRatio;
+
+            return replaced;
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.writeLock().unlock();
+
+            if (compact)
+                compactIfIdle();
+        }
+    }
+
+    /**
+     * @return true if the entry replaced a previous one
+     */
+    private boolean putEntry(final String key, final MetaDataIndex.Entry entry) throws IOException {
+        final Found previous = lookup(key);
+
+        delta.put(key, entry);
+
+        if (previous == null) {
+            count++;
+
+            return false;
+        }
+
+        replaced(previous);
+
+        return true;
+    }
+
+    /**
+     * @return true if an entry was removed
+     */
+    private boolean removeEntry(final String key, final int recordSize) throws IOException {
+        final Found previous = lookup(key);
+
+        // Removal records are garbage as soon as they are written.
+        garbage += recordSize;
+
+        if (previous == null)
+            return false;
+
+        delta.remove(key);
+        replaced(previous);
+
+        count--;
+
+        return true;
+    }
+
+    private void replaced(final Found previous) {
+        garbage += previous.entry.size;
+
+        if (previous.mapped)
+            shadowed.add(previous.entry.offset);
+    }
+
+    /**
+     * Finds the entry of the specified {@code key}. Entries of the mapped index are
+     * matched by reading their records, which are returned with them.
+     */
+    private Found lookup(final String key) throws IOException {
+        final MetaDataIndex.Entry entry = delta.get(key);
+
+        if (entry != null)
+            return new Found(entry, null, false);
+
+        if (index == null)
+            return null;
+
+        final byte[][] record = new byte[1][];
+
+        final MetaDataIndex.Entry mapped = index.find(MetaDataIndex.hash(key), candidate -> {
+            if (shadowed.contains(candidate.offset))
+                return false;
+
+            try {
+                record[0] = readRecord(candidate);
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            return keyOf(record[0]).equals(key);
+        });
+
+        return mapped == null ? null : new Found(mapped, record[0], true);
+    }
+
+    /**
+     * Checks if the record at the specified {@code offset} is the latest record of the
+     * {@code key}, without reading anything from the log.
+     */
+    private boolean isLive(final String key, final long offset) {
+        final MetaDataIndex.Entry entry = delta.get(key);
+
+        if (entry != null)
+            return entry.offset == offset;
+
+        return index != null && !shadowed.contains(offset)
+                && index.find(MetaDataIndex.hash(key), candidate -> candidate.offset == offset) != null;
+    }
+
+    /**
+     * Returns the meta data of the file on the specified {@code path}.
+     *
+     * @param path path of the file the meta data belongs to
+     *
+     * @return meta data of the file or null if no meta data was stored for it
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public FileMetaData get(final String path) {
+        checkNotNull(path);
+
+        lock.readLock().lock();
+
+        try {
+            checkOpen();
+
+            final Found found = lookup(path);
+
+            if (found == null)
+                return null;
+
+            final byte[] record = found.record != null ? found.record : readRecord(found.entry);
+
+            return decodeValue(record, found.entry.keySize);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(final String path) {
+        checkNotNull(path);
+
+        lock.readLock().lock();
+
+        try {
+            checkOpen();
+
+            return lookup(path) != null;
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of files whose meta data is stored
+     */
+    public int size() {
+        lock.readLock().lock();
+
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the paths of the files whose meta data has the specified {@code fileName}.
+     *
+     * @exception NullPointerException if the specified {@code fileName} is null
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public List<String> findByName(final String fileName) {
+        checkNotNull(fileName);
+
+        final int hash = MetaDataIndex.attributeHash(fileName);
+
+        return find(entry -> entry.nameHash == hash, metaData -> fileName.equals(metaData.getFileName()));
+    }
+
+    /**
+     * Returns the paths of the files whose meta data has the specified {@code extension}.
+     *
+     * @exception NullPointerException if the specified {@code extension} is null
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public List<String> findByExtension(final String extension) {
+        checkNotNull(extension);
+
+        final int hash = MetaDataIndex.attributeHash(extension);
+
+        return find(entry -> entry.extensionHash == hash, metaData -> extension.equals(metaData.getExtension()));
+    }
+
+    /**
+     * Returns the paths of the files whose meta data has a save date between the
+     * specified dates, inclusive.
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public List<String> findSavedBetween(final Date from, final Date to) {
+        checkNotNull(from);
+        checkNotNull(to);
+
+        return find(entry -> entry.saveDate != MetaDataIndex.ABSENT
+                && entry.saveDate >= from.getTime() && entry.saveDate <= to.getTime(), null);
+    }
+
+    /**
+     * Returns the paths of the entries accepted by the {@code summary} predicate whose
+     * meta data is accepted by the {@code exact} predicate. Records are read only for
+     * the accepted entries, and only if the path or the meta data is needed.
+     */
+    private List<String> find(final Predicate<MetaDataIndex.Entry> summary, final Predicate<FileMetaData> exact) {
+        final List<String> paths = new ArrayList<>();
+
+        lock.readLock().lock();
+
+        try {
+            checkOpen();
+
+            for (final Map.Entry<String, MetaDataIndex.Entry> entry : delta.entrySet()) {
+                if (summary.test(entry.getValue()) && (exact == null
+                        || exact.test(decodeValue(readRecord(entry.getValue()), entry.getValue().keySize))))
+                    paths.add(entry.getKey());
+            }
+
+            for (final MetaDataIndex.Entry entry : mappedEntries()) {
+                if (!summary.test(entry))
+                    continue;
+
+                final byte[] record = readRecord(entry);
+
+                if (exact == null || exact.test(decodeValue(record, entry.keySize)))
+                    paths.add(keyOf(record));
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return paths;
+    }
+
+    /**
+     * @return live entries of the mapped index
+     */
+    private List<MetaDataIndex.Entry> mappedEntries() {
+        final List<MetaDataIndex.Entry> entries = new ArrayList<>();
+
+        if (index != null)
+            index.forEach(entry -> {
+                if (!shadowed.contains(entry.offset))
+                    entries.add(entry);
+            });
+
+        return entries;
+    }
+
+    /**
+     * Passes the path and meta data of every stored file to the {@code consumer}.
+     *
+     * @see #scan(String, BiConsumer)
+     */
+    public void scan(final BiConsumer<String, FileMetaData> consumer) {
+        scan("", consumer);
+    }
+
+    /**
+     * Passes the path and meta data of every stored file whose path starts with the
+     * specified {@code prefix} to the {@code consumer}.
+     *
+     * <p>
+     * The log is read sequentially, in batches. The {@code consumer} is called without
+     * holding any lock of the store, so it can modify the store, but compaction waits
+     * until the scan is over. Meta data modified during the scan may or may not be
+     * seen by it.
+     * </p>
+     *
+     * @param prefix prefix of the paths of the scanned files
+     * @param consumer consumer of the paths and meta data
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public void scan(final String prefix, final BiConsumer<String, FileMetaData> consumer) {
+        checkNotNull(prefix);
+        checkNotNull(consumer);
+
+        compactionLock.readLock().lock();
+
+        try {
+            final LogReader reader = new LogReader(FILE_HEADER_SIZE);
+            final List<Map.Entry<String, FileMetaData>> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+
+            long end;
+
+            do {
+                batch.clear();
+
+                lock.readLock().lock();
+
+                try {
+                    checkOpen();
+
+                    end = size;
+
+                    byte[] record;
+
+                    while (batch.size() < SCAN_BATCH_SIZE && (record = reader.next(end)) != null) {
+                        final String key = keyOf(record);
+
+                        if (typeOf(record) == PUT && key.startsWith(prefix)
+                                && isLive(key, reader.position - record.length))
+                            batch.add(new AbstractMap.SimpleImmutableEntry<>(key,
+                                    decodeValue(record, keySizeOf(record))));
+                    }
+                } catch (final IOException ex) {
+                    throw new UncheckedIOException(ex);
+                } finally {
+                    lock.readLock().unlock();
+                }
+
+                batch.forEach(entry -> consumer.accept(entry.getKey(), entry.getValue()));
+            } while (reader.position < end);
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the live records into a new log, which replaces the current one,
+     * removing the garbage left behind by replaced and removed meta data. The index
+     * of the new log is persisted as well. Waits for running scans, so it must not
+     * be called by the consumer of a scan.
+     *
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public void compact() {
+        compactionLock.writeLock().lock();
+
+        try {
+            lock.writeLock().lock();
+
+            try {
+                checkOpen();
+
+                compactWorker();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the log unless a scan is running, in which case a later write
+     * tries again.
+     */
+    private void compactIfIdle() {
+        if (!compactionLock.writeLock().tryLock())
+            return;
+
+        try {
+            lock.writeLock().lock();
+
+            try {
+                if (open && garbage > size * compactionRatio)
+                    compactWorker();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    private void compactWorker() throws IOException {
+        final Path compacted = Paths.get(path.toString() + ".compact");
+        final List<MetaDataIndex.Entry> entries = liveEntries();
+        final List<MetaDataIndex.Entry> moved = new ArrayList<>(entries.size());
+
+        long position = FILE_HEADER_SIZE;
+
+        // The compacted log stays open and becomes the log once it replaced the old one.
+        final FileChannel output = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            writeFileHeader(output);
+
+            for (final MetaDataIndex.Entry entry : entries) {
+                // Records are copied as they are, including their checksums.
+                writeFully(output, ByteBuffer.wrap(readRecord(entry)), position);
+
+                moved.add(entry.movedTo(position));
+
+                position += entry.size;
+            }
+
+            output.force(true);
+
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException ex) {
+            // The old log is still open and intact, so the store keeps working without compaction.
+            output.close();
+            Files.deleteIfExists(compacted);
+
+            throw ex;
+        }
+
+        final FileChannel replaced = channel;
+
+        channel = output;
+        size = position;
+        garbage = 0;
+
+        try {
+            try {
+                if (writeIndex(moved)) {
+                    index = MetaDataIndex.open(indexPath);
+
+                    delta.clear();
+                    shadowed.clear();
+
+                    return;
+                }
+            } catch (final IOException ex) {
+                // The entries in memory point into the old log, so they're replaced even if the index isn't written.
+                keepInMemory(moved);
+
+                throw ex;
+            }
+
+            // Too many entries for a mapped index, so every entry stays in memory.
+            keepInMemory(moved);
+        } finally {
+            replaced.close();
+        }
+    }
+
+    /**
+     * Keeps the specified {@code entries} of the compacted log in memory, without
+     * a mapped index.
+     */
+    private void keepInMemory(final List<MetaDataIndex.Entry> entries) throws IOException {
+        final Map<String, MetaDataIndex.Entry> entriesByKey = new HashMap<>(entries.size() * 2);
+
+        for (final MetaDataIndex.Entry entry : entries)
+            entriesByKey.put(keyOf(readRecord(entry)), entry);
+
+        index = null;
+
+        delta.clear();
+        delta.putAll(entriesByKey);
+        shadowed.clear();
+    }
+
+    /**
+     * @return entries of all live records, in the order of the log
+     */
+    private List<MetaDataIndex.Entry> liveEntries() {
+        final List<MetaDataIndex.Entry> entries = mappedEntries();
+
+        entries.addAll(delta.values());
+        entries.sort(Comparator.comparingLong(entry -> entry.offset));
+
+        return entries;
+    }
+
+    private boolean writeIndex(final List<MetaDataIndex.Entry> entries) throws IOException {
+        return MetaDataIndex.write(indexPath, entries, size, garbage, logChecksum(size));
+    }
+
+    /**
+     * Forces all written records to the disk.
+     *
+     * @exception IllegalStateException if the store was closed
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public void sync() {
+        lock.readLock().lock();
+
+        try {
+            checkOpen();
+
+            channel.force(false);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces all written records to the disk, persists the index and closes the log.
+     * Closing a store that is already closed has no effect.
+     *
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+
+        try {
+            if (!open)
+                return;
+
+            open = false;
+
+            channel.force(true);
+
+            writeIndex(liveEntries());
+
+            channel.close();
+
+            index = null;
+            delta.clear();
+            shadowed.clear();
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        checkState(open, "Meta data store is closed!");
+    }
+
+    private byte[] readRecord(final MetaDataIndex.Entry entry) throws IOException {
+        final ByteBuffer record = ByteBuffer.allocate(entry.size);
+
+        readFully(channel, record, entry.offset);
+
+        return record.array();
+    }
+
+    private static byte typeOf(final byte[] record) {
+        return record[RECORD_HEADER_SIZE];
+    }
+
+    private static int keySizeOf(final byte[] record) {
+        return 1 + 4 + ByteBuffer.wrap(record).getInt(RECORD_HEADER_SIZE + 1);
+    }
+
+    private static String keyOf(final byte[] record) {
+        return new String(record, RECORD_HEADER_SIZE + 1 + 4, keySizeOf(record) - 1 - 4, StandardCharsets.UTF_8);
+    }
+
+    private static FileMetaData decodeValue(final byte[] record, final int keySize) throws IOException {
+        final int valueOffset = RECORD_HEADER_SIZE + keySize;
+
+        return BinaryMetaDataCodec.decode(new ByteArrayInputStream(record, valueOffset, record.length - valueOffset));
+    }
+
+    /**
+     * Checksum of the end of the log up to the specified {@code length}, which tells
+     * whether an index was written for this log.
+     */
+    private long logChecksum(final long length) throws IOException {
+        final long start = Math.max(0, length - LOG_CHECKSUM_SIZE);
+        final ByteBuffer tail = ByteBuffer.allocate((int) (length - start));
+
+        readFully(channel, tail, start);
+
+        return checksum(tail.array(), 0, tail.capacity());
+    }
+
+    private static long checksum(final byte[] bytes, final int offset, final int length) {
+        final CRC32 crc = new CRC32();
+
+        crc.update(bytes, offset, length);
+
+        return crc.getValue();
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long written = 0;
+
+        while (buffer.hasRemaining())
+            written += channel.write(buffer, position + written);
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long read = 0;
+
+        while (buffer.hasRemaining()) {
+            final int bytesRead = channel.read(buffer, position + read);
+
+            if (bytesRead < 0)
+                throw new EOFException("Meta data record is incomplete!");
+
+            read += bytesRead;
+        }
+    }
+
+    /**
+     * Entry found by a lookup, with its record if it had to be read.
+     */
+    private static final class Found {
+
+        private final MetaDataIndex.Entry entry;
+
+        private final byte[] record;
+
+        private final boolean mapped;
+
+        private Found(final MetaDataIndex.Entry entry, final byte[] record, final boolean mapped) {
+            this.entry  = entry;
+            this.record = record;
+            this.mapped = mapped;
+        }
+
+    }
+
+    /**
+     * Reads complete, valid records of the log sequentially with positional reads,
+     * so it doesn't interfere with other readers of the channel.
+     */
+    private final class LogReader {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        // Position of the first byte of the buffer in the log.
+        private long bufferStart;
+
+        // Position of the next record in the log.
+        private long position;
+
+        private LogReader(final long position) {
+            this.position = position;
+
+            buffer.limit(0);
+        }
+
+        /**
+         * @return next record, including its header, or null if there are no more
+         * complete and valid records before the {@code end}
+         */
+        private byte[] next(final long end) throws IOException {
+            if (position + RECORD_HEADER_SIZE > end)
+                return null;
+
+            final ByteBuffer header = ByteBuffer.wrap(read(position, RECORD_HEADER_SIZE));
+
+            final int bodyLength = header.getInt(0);
+            final long checksum = header.getInt(4) & 0xFFFFFFFFL;
+
+            if (bodyLength < 1 + 4 || position + RECORD_HEADER_SIZE + bodyLength > end)
+                return null;
+
+            final byte[] record = read(position, RECORD_HEADER_SIZE + bodyLength);
+
+            if (checksum(record, RECORD_HEADER_SIZE, bodyLength) != checksum)
+                return null;
+
+            position += record.length;
+
+            return record;
+        }
+
+        private byte[] read(final long offset, final int length) throws IOException {
+            final byte[] bytes = new byte[length];
+
+            if (length > buffer.capacity()) {
+                readFully(channel, ByteBuffer.wrap(bytes), offset);
+
+                return bytes;
+            }
+
+            if (offset < bufferStart || offset + length > bufferStart + buffer.limit()) {
+                buffer.clear();
+
+                while (buffer.position() < length) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0)
+                        break;
+                }
+
+                buffer.flip();
+                bufferStart = offset;
+
+                if (buffer.limit() < length)
+                    throw new EOFException("Meta data record is incomplete!");
+            }
+
+            System.arraycopy(buffer.array(), (int) (offset - bufferStart), bytes, 0, length);
+
+            return bytes;
+        }
+
+    }
+
+    public static class MetaDataStoreBuilder {
+
+        private final Path path;
+
+        private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+
+        private boolean autoCompact = true;
+
+        /**
+         * @param path path of the log file, which is created if it doesn't exist
+         */
+        public MetaDataStoreBuilder(final Path path) {
+            this.path = checkNotNull(path);
+        }
+
+        /**
+         * Sets the ratio of garbage in the log, between 0 and 1, that triggers
+         * automatic compaction.
+         */
+        public MetaDataStoreBuilder compactionRatio(final double compactionRatio) {
+            checkArgument(compactionRatio > 0 && compactionRatio < 1, "Compaction ratio must be between 0 and 1!");
+
+            this.compactionRatio = compactionRatio;
+
+            return this;
+        }
+
+        public MetaDataStoreBuilder autoCompact(final boolean autoCompact) {
+            this.autoCompact = autoCompact;
+
+            return this;
+        }
+
+        /**
+         * Opens the store, mapping its index or reading the whole log if there is
+         * no index that matches it.
+         *
+         * @exception UncheckedIOException if an I/O error occurs
+         * @exception IllegalStateException if the file isn't a meta data store
+         */
+        public MetaDataStore build() {
+            final MetaDataStore store = new MetaDataStore(this);
+
+            try {
+                store.open();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            return store;
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+package store;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static util.Preconditions.checkArgument;
+
+/**
+ * Concurrent Bloom filter of SHA-256 hashes.
+ *
+ * <p>
+ * The hashes are already uniformly distributed, so instead of hashing them again
+ * the bit positions are derived from their first 16 bytes by double hashing. The
+ * filter never forgets a hash and never misses one that was added, but can claim
+ * to contain a hash that wasn't added, with the configured probability once it
+ * holds the expected number of hashes.
+ * </p>
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    BloomFilter(final long expectedSize, final double falsePositiveRate) {
+        checkArgument(expectedSize > 0, "Expected size must be positive!");
+        checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "False positive rate must be between 0 and 1!");
+
+        final double ln2 = Math.log(2);
+        final long optimalBits = (long) Math.ceil(-expectedSize * Math.log(falsePositiveRate) / (ln2 * ln2));
+
+        checkArgument(optimalBits / Long.SIZE < Integer.MAX_VALUE, "Bloom filter would be too large!");
+
+        this.bits = new AtomicLongArray((int) (optimalBits / Long.SIZE) + 1);
+        this.bitCount = (long) bits.length() * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedSize * ln2));
+    }
+
+    void add(final byte[] hash) {
+        final long first = longAt(hash, 0);
+        final long second = longAt(hash, 8);
+
+        for (int i = 0; i < hashCount; i++) {
+            final long bit = Math.floorMod(first + i * second, bitCount);
+            final int index = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+
+            long word = bits.get(index);
+
+            while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask))
+                word = bits.get(index);
+        }
+    }
+
+    boolean mightContain(final byte[] hash) {
+        final long first = longAt(hash, 0);
+        final long second = longAt(hash, 8);
+
+        for (int i = 0; i < hashCount; i++) {
+            final long bit = Math.floorMod(first + i * second, bitCount);
+
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    private static long longAt(final byte[] bytes, final int offset) {
+        long value = 0;
+
+        for (int i = 0; i < Long.BYTES; i++)
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+
+        return value;
+    }
+
+}
@@ -0,0 +1,132 @@
+package store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static util.Preconditions.checkArgument;
+
+/**
+ * Content addressed store of chunks, where every chunk is a file named by the
+ * SHA-256 hash of its content.
+ *
+ * <p>
+ * Chunks are spread over 256 directories by the first byte of their hash, so no
+ * directory grows too large. A chunk that is already stored isn't written again,
+ * which is what shares equal chunks between files and versions. Chunks are
+ * written to a temporary file first and moved into place, so a chunk file is
+ * either complete or missing, even if the process dies while writing it.
+ * </p>
+ */
+final class ChunkStore {
+
+    static final int HASH_SIZE = 32;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(ChunkStore::sha256);
+
+    private final Path directory;
+
+    ChunkStore(final Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static byte[] hash(final byte[] data, final int offset, final int length) {
+        final MessageDigest digest = SHA_256.get();
+
+        digest.reset();
+        digest.update(data, offset, length);
+
+        return digest.digest();
+    }
+
+    /**
+     * Stores the chunk unless a chunk with the same content is already stored.
+     *
+     * @return true if the chunk was written, false if it was already stored
+     */
+    boolean put(final byte[] hash, final byte[] data, final int offset, final int length) throws IOException {
+        final Path chunk = pathOf(hash);
+
+        if (Files.exists(chunk))
+            return false;
+
+        Files.createDirectories(chunk.getParent());
+
+        final Path temporary = Files.createTempFile(chunk.getParent(), chunk.getFileName().toString(), ".tmp");
+
+        try {
+            try (final OutputStream output = Files.newOutputStream(temporary)) {
+                output.write(data, offset, length);
+            }
+
+            Files.move(temporary, chunk, StandardCopyOption.ATOMIC_MOVE);
+
+            return true;
+        } catch (final FileAlreadyExistsException ex) {
+            // Same chunk was stored concurrently.
+            return false;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    InputStream open(final byte[] hash) throws IOException {
+        return Files.newInputStream(pathOf(hash));
+    }
+
+    private Path pathOf(final byte[] hash) {
+        final String hex = toHex(hash);
+
+        return directory.resolve(hex.substring(0, 2)).resolve(hex);
+    }
+
+    static String toHex(final byte[] bytes) {
+        final char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >>> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+
+        return new String(hex);
+    }
+
+    static byte[] fromHex(final String hex) {
+        checkArgument(hex.length() == HASH_SIZE * 2, "Invalid hash!");
+
+        final byte[] bytes = new byte[hex.length() / 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hex.charAt(i * 2), 16);
+            final int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+
+            checkArgument(high >= 0 && low >= 0, "Invalid hash!");
+
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+
+        return bytes;
+    }
+
+}
@@ -0,0 +1,178 @@
+package store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static util.Preconditions.*;
+
+/**
+ * Splits a stream into chunks whose boundaries depend on the content, not on
+ * the position in the stream.
+ *
+ * <p>
+ * Boundaries are found with a Gear rolling hash, the way FastCDC finds them: a
+ * boundary is placed after a byte where the hash of the preceding bytes has all the
+ * bits of a mask cleared. Since the hash only depends on the last 64 bytes, inserting
+ * or removing bytes moves the boundaries around the change but leaves all others in
+ * place, so unchanged regions of two versions of a file are split into the same
+ * chunks. No chunk is smaller than a quarter of the average size, except the last
+ * one, or larger than eight times the average size. Before the average size a
+ * stricter mask is used and after it a looser one, which keeps most chunks close
+ * to the average.
+ * </p>
+ *
+ * <p>
+ * Chunks are returned in a buffer that is reused by the next call to
+ * {@link #next()}.
+ * </p>
+ */
+final class ContentChunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Table has to be the same everywhere, so it's generated from a fixed seed.
+        final Random random = new Random(0x534B43444CL);
+
+        for (int i = 0; i < GEAR.length; i++)
+            GEAR[i] = random.nextLong();
+    }
+
+    private final InputStream input;
+
+    private final int minSize;
+
+    private final int averageSize;
+
+    private final int maxSize;
+
+    private final long strictMask;
+
+    private final long looseMask;
+
+    private final byte[] buffer;
+
+    private int start;
+
+    private int end;
+
+    private boolean eof;
+
+    private int chunkOffset;
+
+    private int chunkLength;
+
+    ContentChunker(final InputStream input, final int averageSize) {
+        checkArgument(Integer.bitCount(averageSize) == 1 && averageSize >= 256,
+                "Average chunk size must be a power of two of at least 256 bytes!");
+
+        this.input = checkNotNull(input);
+        this.averageSize = averageSize;
+        this.minSize = averageSize / 4;
+        this.maxSize = averageSize * 8;
+
+        final int bits = Integer.numberOfTrailingZeros(averageSize);
+
+        this.strictMask = mask(bits + 2);
+        this.looseMask = mask(bits - 2);
+        this.buffer = new byte[maxSize * 2];
+    }
+
+    /**
+     * The highest bits of a Gear hash depend on the most bytes, so the mask
+     * checks those.
+     */
+    private static long mask(final int bits) {
+        return -1L << (64 - bits);
+    }
+
+    /**
+     * Reads the next chunk, which is then available through {@link #buffer()},
+     * {@link #offset()} and {@link #length()}.
+     *
+     * @return false if the end of the stream was reached
+     */
+    boolean next() throws IOException {
+        start += chunkLength;
+
+        fill();
+
+        final int available = end - start;
+
+        if (available == 0)
+            return false;
+
+        chunkOffset = start;
+        chunkLength = cut(available);
+
+        return true;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int offset() {
+        return chunkOffset;
+    }
+
+    int length() {
+        return chunkLength;
+    }
+
+    /**
+     * Reads until at least a chunk of the maximum size is buffered or the end of
+     * the stream is reached.
+     */
+    private void fill() throws IOException {
+        if (eof || end - start >= maxSize)
+            return;
+
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+
+        while (end < buffer.length) {
+            final int read = input.read(buffer, end, buffer.length - end);
+
+            if (read < 0) {
+                eof = true;
+
+                return;
+            }
+
+            end += read;
+        }
+    }
+
+    private int cut(final int available) {
+        if (available <= minSize)
+            return available;
+
+        final int limit = Math.min(available, maxSize);
+        final int normal = Math.min(limit, averageSize);
+
+        long hash = 0;
+        int i = minSize;
+
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[buffer[start + i] & 0xFF];
+
+            if ((hash & strictMask) == 0)
+                return i + 1;
+        }
+
+        for (; i < limit; i++) {
+            hash = (hash << 1) + GEAR[buffer[start + i] & 0xFF];
+
+            if ((hash & looseMask) == 0)
+                return i + 1;
+        }
+
+        return limit;
+    }
+
+}
@@ -0,0 +1,484 @@
+package store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+
+import static util.Preconditions.*;
+
+/**
+ * Stores content by key, keeping every distinct content only once.
+ *
+ * <p>
+ * Content is hashed with SHA-256 while it's copied into a temporary file, so it's
+ * read only once. If a blob with the same hash is already stored the temporary
+ * file is deleted, usually before any of it reached the disk, and the key refers
+ * to the existing blob instead. Every blob counts the keys that refer to it and is
+ * deleted once the last of them is removed or replaced.
+ * </p>
+ *
+ * <p>
+ * A {@link BloomFilter} of all stored hashes is kept in memory, so new content,
+ * which is most content, is recognized without looking for its blob on the disk.
+ * Only hashes the filter might contain are looked up. The filter is rebuilt from
+ * the names of the stored blobs when the store is opened, without reading them.
+ * </p>
+ *
+ * <p>
+ * Blobs, their reference counts and the references of keys are all stored as
+ * separate files that are replaced atomically. Keys are switched to a new blob
+ * before the old one is released, so a crash can leave a blob with a reference
+ * count that is too high, which wastes its space, but never deletes content that
+ * is still referenced. Blobs must not be modified, so they're made read only. The
+ * store can be used by many threads at once, but not by many processes. For example
+ *
+ * <pre>{@code
+ * DeduplicationStore store = new DeduplicationStore.DeduplicationStoreBuilder(Paths.get("blobs")).build();
+ *
+ * try (InputStream content = Files.newInputStream(Paths.get("app.jar"))) {
+ *     DeduplicationStore.Blob blob = store.put("releases/1.0/app.jar", content);
+ * }
+ * }</pre>
+ * </p>
+ */
+public class DeduplicationStore {
+
+    /**
+     * Default number of blobs the Bloom filter is sized for.
+     */
+    public static final long DEFAULT_EXPECTED_BLOBS = 1_000_000;
+
+    /**
+     * Default rate of new content that is looked up on the disk once the store
+     * holds the expected number of blobs.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final String BLOBS_DIRECTORY = "blobs";
+
+    private static final String REFERENCES_DIRECTORY = "references";
+
+    private static final String COUNT_EXTENSION = ".refs";
+
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path directory;
+
+    private final Path blobs;
+
+    private final Path references;
+
+    private final BloomFilter filter;
+
+    private final Object[] blobLocks = new Object[LOCK_STRIPES];
+
+    private final Object[] keyLocks = new Object[LOCK_STRIPES];
+
+    private DeduplicationStore(final DeduplicationStoreBuilder builder) {
+        this.directory = builder.directory;
+        this.filter = new BloomFilter(builder.expectedBlobs, builder.falsePositiveRate);
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            blobLocks[i] = new Object();
+            keyLocks[i] = new Object();
+        }
+
+        try {
+            this.blobs = Files.createDirectories(directory.resolve(BLOBS_DIRECTORY));
+            this.references = Files.createDirectories(directory.resolve(REFERENCES_DIRECTORY));
+
+            loadFilter();
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Adds the hashes of all stored blobs to the filter and deletes temporary
+     * files left behind by a crash.
+     */
+    private void loadFilter() throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+                    throws IOException {
+                final String name = file.getFileName().toString();
+
+                if (name.endsWith(TEMPORARY_EXTENSION))
+                    Files.delete(file);
+                else if (file.startsWith(blobs) && name.length() == ChunkStore.HASH_SIZE * 2)
+                    filter.add(ChunkStore.fromHex(name));
+
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Stores all remaining bytes of the {@code content} under the specified {@code key},
+     * replacing the content previously stored under it. The stream isn't closed.
+     *
+     * @param key key of the content
+     * @param content content to be stored
+     *
+     * @return blob the key refers to
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public Blob put(final String key, final InputStream content) {
+        checkNotNull(key);
+        checkNotNull(content);
+
+        try {
+            final Path temporary = Files.createTempFile(blobs, "blob", TEMPORARY_EXTENSION);
+
+            try {
+                final MessageDigest digest = ChunkStore.sha256();
+                final long size = copy(content, temporary, digest);
+                final byte[] hash = digest.digest();
+
+                final boolean duplicate = retain(hash, temporary);
+
+                replaceReference(key, hash);
+
+                return new Blob(ChunkStore.toHex(hash), blobOf(hash), size, duplicate);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long copy(final InputStream content, final Path destination, final MessageDigest digest)
+            throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        long size = 0;
+
+        try (final OutputStream output = Files.newOutputStream(destination)) {
+            int bytesRead;
+
+            while ((bytesRead = content.read(buffer)) > 0) {
+                digest.update(buffer, 0, bytesRead);
+                output.write(buffer, 0, bytesRead);
+                size += bytesRead;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Adds a reference to the blob with the specified {@code hash}, which is created
+     * from the {@code temporary} file if it isn't stored yet.
+     *
+     * @return true if the blob was already stored
+     */
+    private boolean retain(final byte[] hash, final Path temporary) throws IOException {
+        final Path blob = blobOf(hash);
+
+        synchronized (blobLock(hash)) {
+            final boolean duplicate = filter.mightContain(hash) && Files.exists(blob);
+
+            if (!duplicate) {
+                Files.createDirectories(blob.getParent());
+                Files.move(temporary, blob, StandardCopyOption.ATOMIC_MOVE);
+
+                // Links to the blob share its permissions, so they can't be written into either.
+                blob.toFile().setReadOnly();
+
+                filter.add(hash);
+            }
+
+            writeCount(hash, readCount(hash) + 1);
+
+            return duplicate;
+        }
+    }
+
+    /**
+     * Removes a reference to the blob with the specified {@code hash}, and deletes
+     * the blob if it was the last one.
+     */
+    private void release(final byte[] hash) throws IOException {
+        synchronized (blobLock(hash)) {
+            final long count = readCount(hash) - 1;
+
+            if (count > 0) {
+                writeCount(hash, count);
+
+                return;
+            }
+
+            // Read only files can't be deleted on some platforms.
+            blobOf(hash).toFile().setWritable(true);
+
+            Files.deleteIfExists(blobOf(hash));
+            Files.deleteIfExists(countOf(hash));
+        }
+    }
+
+    private void replaceReference(final String key, final byte[] hash) throws IOException {
+        final byte[] previous;
+
+        synchronized (keyLock(key)) {
+            previous = readReference(key);
+
+            writeAtomically(referenceOf(key), hash);
+        }
+
+        if (previous != null)
+            release(previous);
+    }
+
+    /**
+     * Returns the blob stored under the specified {@code key}.
+     *
+     * @return blob the key refers to, or null if nothing is stored under the key
+     *
+     * @exception NullPointerException if the specified {@code key} is null
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public Blob get(final String key) {
+        checkNotNull(key);
+
+        try {
+            final byte[] hash = readReference(key);
+
+            if (hash == null)
+                return null;
+
+            final Path blob = blobOf(hash);
+
+            return new Blob(ChunkStore.toHex(hash), blob, Files.size(blob), true);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Removes the content stored under the specified {@code key}. Its blob is deleted
+     * if no other key refers to it.
+     *
+     * @return true if content was stored under the key
+     *
+     * @exception NullPointerException if the specified {@code key} is null
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public boolean remove(final String key) {
+        checkNotNull(key);
+
+        try {
+            final byte[] previous;
+
+            synchronized (keyLock(key)) {
+                previous = readReference(key);
+
+                if (previous == null)
+                    return false;
+
+                Files.delete(referenceOf(key));
+            }
+
+            release(previous);
+
+            return true;
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return number of keys that refer to the blob with the specified hexadecimal
+     * {@code hash}, or 0 if the blob isn't stored
+     *
+     * @exception NullPointerException if the specified {@code hash} is null
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public long referenceCount(final String hash) {
+        checkNotNull(hash);
+
+        try {
+            return readCount(ChunkStore.fromHex(hash));
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private byte[] readReference(final String key) throws IOException {
+        try {
+            return Files.readAllBytes(referenceOf(key));
+        } catch (final NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    private long readCount(final byte[] hash) throws IOException {
+        try {
+            return ByteBuffer.wrap(Files.readAllBytes(countOf(hash))).getLong();
+        } catch (final NoSuchFileException ex) {
+            return 0;
+        }
+    }
+
+    private void writeCount(final byte[] hash, final long count) throws IOException {
+        writeAtomically(countOf(hash), ByteBuffer.allocate(Long.BYTES).putLong(count).array());
+    }
+
+    private static void writeAtomically(final Path path, final byte[] content) throws IOException {
+        Files.createDirectories(path.getParent());
+
+        final Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(),
+                TEMPORARY_EXTENSION);
+
+        try {
+            Files.write(temporary, content);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path blobOf(final byte[] hash) {
+        final String hex = ChunkStore.toHex(hash);
+
+        return blobs.resolve(hex.substring(0, 2)).resolve(hex);
+    }
+
+    private Path countOf(final byte[] hash) {
+        final Path blob = blobOf(hash);
+
+        return blob.resolveSibling(blob.getFileName() + COUNT_EXTENSION);
+    }
+
+    private Path referenceOf(final String key) {
+        // Keys can be longer than file names are allowed to be, so their hash is used.
+        final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        final String hex = ChunkStore.toHex(ChunkStore.hash(bytes, 0, bytes.length));
+
+        return references.resolve(hex.substring(0, 2)).resolve(hex);
+    }
+
+    private Object blobLock(final byte[] hash) {
+        return blobLocks[(hash[0] & 0xFF) % LOCK_STRIPES];
+    }
+
+    private Object keyLock(final String key) {
+        return keyLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Stored content, identified by its SHA-256 hash.
+     */
+    public static final class Blob {
+
+        private final String hash;
+
+        private final Path path;
+
+        private final long size;
+
+        private final boolean duplicate;
+
+        private Blob(final String hash, final Path path, final long size, final boolean duplicate) {
+            this.hash      = hash;
+            this.path      = path;
+            this.size      = size;
+            this.duplicate = duplicate;
+        }
+
+        /**
+         * @return SHA-256 hash of the content in hexadecimal
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return path of the file that holds the content, which must not be modified
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return true if the content was already stored, so no new blob was written
+         */
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Blob[hash = %s, size = %d, duplicate = %b]", hash, size, duplicate);
+        }
+
+    }
+
+    public static class DeduplicationStoreBuilder {
+
+        private final Path directory;
+
+        private long expectedBlobs = DEFAULT_EXPECTED_BLOBS;
+
+        private double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+
+        public DeduplicationStoreBuilder(final Path directory) {
+            this.directory = checkNotNull(directory).toAbsolutePath().normalize();
+        }
+
+        /**
+         * Sets the number of blobs the Bloom filter is sized for. Stores with more blobs
+         * still work, but look up more new content on the disk.
+         */
+        public DeduplicationStoreBuilder expectedBlobs(final long expectedBlobs) {
+            checkArgument(expectedBlobs > 0, "Expected number of blobs must be positive!");
+
+            this.expectedBlobs = expectedBlobs;
+
+            return this;
+        }
+
+        public DeduplicationStoreBuilder falsePositiveRate(final double falsePositiveRate) {
+            checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1,
+                    "False positive rate must be between 0 and 1!");
+
+            this.falsePositiveRate = falsePositiveRate;
+
+            return this;
+        }
+
+        public DeduplicationStore build() {
+            return new DeduplicationStore(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,545 @@
+package store;
+
+import exceptions.FileNotFoundException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static util.Preconditions.*;
+
+/**
+ * Keeps every uploaded version of a file, storing content that versions have in
+ * common only once.
+ *
+ * <p>
+ * Content is split into chunks by a content defined {@link ContentChunker}, and
+ * every chunk is stored once in a content addressed {@link ChunkStore} under its
+ * SHA-256 hash. A version is a manifest that lists the hashes of its chunks. Since
+ * chunk boundaries follow the content, a new version of a file that changed in a
+ * few places shares all chunks but the ones around the changes with the previous
+ * versions, and so do different files with common content. Uploading the same
+ * content twice stores only a new manifest.
+ * </p>
+ *
+ * <p>
+ * Versions of a path are numbered from 1, in the order they were stored, and
+ * any of them can be read back by its number. Manifests and chunks are written to
+ * temporary files and moved into place, so a version is either stored completely
+ * or not at all. The store can be used by many threads at once, but not by many
+ * processes. For example
+ *
+ * <pre>{@code
+ * VersionedFileStore store = new VersionedFileStore.VersionedFileStoreBuilder(Paths.get("versions")).build();
+ *
+ * store.put("documents/report.pdf", Paths.get("report.pdf"));
+ * store.put("documents/report.pdf", Paths.get("report-final.pdf"));
+ *
+ * store.copy("documents/report.pdf", 1, Paths.get("report-draft.pdf"));
+ * }</pre>
+ * </p>
+ */
+public class VersionedFileStore {
+
+    /**
+     * Default average size of the chunks that content is split into.
+     */
+    public static final int DEFAULT_AVERAGE_CHUNK_SIZE = 8 * 1024;
+
+    private static final int MAGIC = 0x534B564D;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String CHUNKS_DIRECTORY = "chunks";
+
+    private static final String VERSIONS_DIRECTORY = "versions";
+
+    private static final String VERSION_EXTENSION = ".version";
+
+    private final Path directory;
+
+    private final int averageChunkSize;
+
+    private final ChunkStore chunks;
+
+    private final Path versions;
+
+    private VersionedFileStore(final VersionedFileStoreBuilder builder) {
+        this.directory = builder.directory;
+        this.averageChunkSize = builder.averageChunkSize;
+
+        try {
+            this.chunks = new ChunkStore(directory.resolve(CHUNKS_DIRECTORY));
+            this.versions = Files.createDirectories(directory.resolve(VERSIONS_DIRECTORY));
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getAverageChunkSize() {
+        return averageChunkSize;
+    }
+
+    /**
+     * Stores the content of the {@code file} as the next version of the specified {@code path}.
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception UncheckedIOException if an I/O error occurs
+     *
+     * @see #put(String, InputStream)
+     */
+    public Version put(final String path, final Path file) {
+        checkNotNull(path);
+        checkNotNull(file);
+
+        try (final InputStream content = Files.newInputStream(file)) {
+            return put(path, content);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Stores all remaining bytes of the {@code content} as the next version of the
+     * specified {@code path}. The stream isn't closed.
+     *
+     * @param path path of the file, with {@code /} as the separator
+     * @param content content of the new version
+     *
+     * @return the stored version
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public Version put(final String path, final InputStream content) {
+        checkNotNull(path);
+        checkNotNull(content);
+
+        final String normalized = normalize(path);
+
+        try {
+            final ContentChunker chunker = new ContentChunker(content, averageChunkSize);
+            final List<Chunk> chunkList = new ArrayList<>();
+
+            long size = 0;
+            long storedSize = 0;
+
+            while (chunker.next()) {
+                final byte[] hash = ChunkStore.hash(chunker.buffer(), chunker.offset(), chunker.length());
+
+                if (chunks.put(hash, chunker.buffer(), chunker.offset(), chunker.length()))
+                    storedSize += chunker.length();
+
+                chunkList.add(new Chunk(hash, chunker.length()));
+                size += chunker.length();
+            }
+
+            return writeManifest(normalized, size, storedSize, chunkList);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Numbers the version and writes its manifest. Numbering is serialized, so
+     * concurrent uploads of the same path get consecutive numbers.
+     */
+    private synchronized Version writeManifest(final String path, final long size, final long storedSize,
+                                               final List<Chunk> chunkList) throws IOException {
+        final Path versionDirectory = Files.createDirectories(directoryOf(path));
+
+        final List<Long> numbers = numbers(versionDirectory);
+        final long number = numbers.isEmpty() ? 1 : numbers.get(numbers.size() - 1) + 1;
+
+        final Version version = new Version(path, number, size, storedSize, System.currentTimeMillis(), chunkList);
+
+        final Path manifest = versionDirectory.resolve(number + VERSION_EXTENSION);
+        final Path temporary = Files.createTempFile(versionDirectory, manifest.getFileName().toString(), ".tmp");
+
+        try {
+            try (final DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                writeVersion(output, version);
+            }
+
+            Files.move(temporary, manifest, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        return version;
+    }
+
+    /**
+     * Returns all stored versions of the specified {@code path}, from the oldest to
+     * the newest.
+     *
+     * @return stored versions, or an empty list if the path was never stored
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public List<Version> versions(final String path) {
+        checkNotNull(path);
+
+        final String normalized = normalize(path);
+
+        try {
+            final Path versionDirectory = directoryOf(normalized);
+            final List<Version> found = new ArrayList<>();
+
+            for (final long number : numbers(versionDirectory))
+                found.add(readManifest(normalized, number));
+
+            return found;
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return the newest version of the specified {@code path}, or null if the path
+     * was never stored
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public Version latest(final String path) {
+        checkNotNull(path);
+
+        final String normalized = normalize(path);
+
+        try {
+            final List<Long> numbers = numbers(directoryOf(normalized));
+
+            return numbers.isEmpty() ? null : readManifest(normalized, numbers.get(numbers.size() - 1));
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the specified {@code version} of the {@code path}.
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception FileNotFoundException if the version isn't stored
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public Version version(final String path, final long version) {
+        checkNotNull(path);
+
+        try {
+            return readManifest(normalize(path), version);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Opens the content of the specified {@code version} of the {@code path}. Chunks
+     * are read one after another, as the stream is consumed.
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception FileNotFoundException if the version isn't stored
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public InputStream open(final String path, final long version) {
+        return new VersionInputStream(version(path, version).chunks);
+    }
+
+    /**
+     * Copies the content of the specified {@code version} of the {@code path} to the
+     * {@code destination} file, which is created or truncated.
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception FileNotFoundException if the version isn't stored
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public void copy(final String path, final long version, final Path destination) {
+        checkNotNull(destination);
+
+        try (final InputStream input = open(path, version);
+             final OutputStream output = Files.newOutputStream(destination)) {
+            final byte[] buffer = new byte[averageChunkSize * 8];
+
+            int bytesRead;
+
+            while ((bytesRead = input.read(buffer)) > 0)
+                output.write(buffer, 0, bytesRead);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private Path directoryOf(final String path) {
+        // Paths can be longer than file names are allowed to be, so their hash is used.
+        final byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+
+        return versions.resolve(ChunkStore.toHex(ChunkStore.hash(bytes, 0, bytes.length)));
+    }
+
+    private static List<Long> numbers(final Path versionDirectory) throws IOException {
+        if (!Files.isDirectory(versionDirectory))
+            return Collections.emptyList();
+
+        final List<Long> numbers = new ArrayList<>();
+
+        try (final DirectoryStream<Path> manifests = Files.newDirectoryStream(versionDirectory,
+                "*" + VERSION_EXTENSION)) {
+            for (final Path manifest : manifests) {
+                final String name = manifest.getFileName().toString();
+
+                numbers.add(Long.parseLong(name.substring(0, name.length() - VERSION_EXTENSION.length())));
+            }
+        }
+
+        numbers.sort(Comparator.naturalOrder());
+
+        return numbers;
+    }
+
+    private Version readManifest(final String path, final long number) throws IOException {
+        final Path manifest = directoryOf(path).resolve(number + VERSION_EXTENSION);
+
+        try (final DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(manifest)))) {
+            return readVersion(input);
+        } catch (final NoSuchFileException ex) {
+            throw new FileNotFoundException(String.format("Version %d of %s wasn't found!", number, path));
+        }
+    }
+
+    private static void writeVersion(final DataOutputStream output, final Version version) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(FORMAT_VERSION);
+        output.writeUTF(version.path);
+        output.writeLong(version.number);
+        output.writeLong(version.size);
+        output.writeLong(version.storedSize);
+        output.writeLong(version.time);
+        output.writeInt(version.chunks.size());
+
+        for (final Chunk chunk : version.chunks) {
+            output.write(chunk.hash);
+            output.writeInt(chunk.length);
+        }
+    }
+
+    private static Version readVersion(final DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC || input.readUnsignedByte() > FORMAT_VERSION)
+            throw new IOException("Version manifest is invalid or too new!");
+
+        final String path = input.readUTF();
+        final long number = input.readLong();
+        final long size = input.readLong();
+        final long storedSize = input.readLong();
+        final long time = input.readLong();
+        final int chunkCount = input.readInt();
+
+        final List<Chunk> chunkList = new ArrayList<>(chunkCount);
+
+        for (int i = 0; i < chunkCount; i++) {
+            final byte[] hash = new byte[ChunkStore.HASH_SIZE];
+
+            input.readFully(hash);
+            chunkList.add(new Chunk(hash, input.readInt()));
+        }
+
+        return new Version(path, number, size, storedSize, time, chunkList);
+    }
+
+    static String normalize(final String path) {
+        return path.replace('\\', '/').replaceAll("/{2,}", "/").replaceAll("^/|/$", "");
+    }
+
+    /**
+     * Stored version of a file.
+     */
+    public static final class Version {
+
+        private final String path;
+
+        private final long number;
+
+        private final long size;
+
+        private final long storedSize;
+
+        private final long time;
+
+        private final List<Chunk> chunks;
+
+        private Version(final String path, final long number, final long size, final long storedSize,
+                        final long time, final List<Chunk> chunks) {
+            this.path       = path;
+            this.number     = number;
+            this.size       = size;
+            this.storedSize = storedSize;
+            this.time       = time;
+            this.chunks     = chunks;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return number of the version, starting from 1
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * @return size of the content of the version
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return size of the chunks this version added to the store, which is less
+         * than its size when it shares content with other versions
+         */
+        public long getStoredSize() {
+            return storedSize;
+        }
+
+        public Date getSaveDate() {
+            return new Date(time);
+        }
+
+        public int getChunkCount() {
+            return chunks.size();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Version[path = %s, number = %d, size = %d, storedSize = %d, chunks = %d]",
+                    path, number, size, storedSize, chunks.size());
+        }
+
+    }
+
+    private static final class Chunk {
+
+        private final byte[] hash;
+
+        private final int length;
+
+        private Chunk(final byte[] hash, final int length) {
+            this.hash = hash;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * Reads the chunks of a version one after another.
+     */
+    private final class VersionInputStream extends InputStream {
+
+        private final List<Chunk> chunkList;
+
+        private int next;
+
+        private InputStream current;
+
+        private VersionInputStream(final List<Chunk> chunkList) {
+            this.chunkList = chunkList;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0)
+                return 0;
+
+            while (true) {
+                if (current == null) {
+                    if (next == chunkList.size())
+                        return -1;
+
+                    current = chunks.open(chunkList.get(next++).hash);
+                }
+
+                final int bytesRead = current.read(b, off, len);
+
+                if (bytesRead > 0)
+                    return bytesRead;
+
+                current.close();
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+
+            next = chunkList.size();
+        }
+
+    }
+
+    public static class VersionedFileStoreBuilder {
+
+        private final Path directory;
+
+        private int averageChunkSize = DEFAULT_AVERAGE_CHUNK_SIZE;
+
+        public VersionedFileStoreBuilder(final Path directory) {
+            this.directory = checkNotNull(directory).toAbsolutePath().normalize();
+        }
+
+        /**
+         * Sets the average size of chunks, which has to be a power of two of at least
+         * 256 bytes. Smaller chunks share more content between versions, at the cost
+         * of more chunk files. Changing the size of an existing store only affects
+         * how new versions are split.
+         */
+        public VersionedFileStoreBuilder averageChunkSize(final int averageChunkSize) {
+            checkArgument(Integer.bitCount(averageChunkSize) == 1 && averageChunkSize >= 256,
+                    "Average chunk size must be a power of two of at least 256 bytes!");
+
+            this.averageChunkSize = averageChunkSize;
+
+            return this;
+        }
+
+        public VersionedFileStore build() {
+            return new VersionedFileStore(this);
+        }
+
+    }
+
+}
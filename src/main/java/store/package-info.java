@@ -0,0 +1,5 @@
+/**
+ * Contains classes that store the content of files in deduplicated,
+ * content addressed chunks.
+ */
+package store;
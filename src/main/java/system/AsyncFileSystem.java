@@ -0,0 +1,109 @@
+package system;
+
+import meta.FileMetaData;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous companion of the {@link FileSystem} interface.
+ *
+ * <p>
+ * Every method of this interface starts the corresponding {@link FileSystem}
+ * operation and returns immediately with a {@link CompletableFuture} of its result,
+ * so the calling thread isn't blocked by a slow storage. Exceptions that the
+ * synchronous operation would throw complete the returned future exceptionally
+ * instead of being thrown to the caller.
+ * </p>
+ *
+ * <p>
+ * Any synchronous file system can be used asynchronously with the
+ * {@link #wrap(FileSystem, Executor)} method, which runs its operations on the
+ * specified {@link Executor}. For example
+ *
+ * <pre>{@code
+ * AsyncFileSystem<File> fileSystem = AsyncFileSystem.wrap(new LocalFileSystem(), executor);
+ *
+ * fileSystem.upload("report.pdf", "documents")
+ *         .thenCompose(ignored -> fileSystem.findFileByName("report.pdf"))
+ *         .thenAccept(files -> System.out.println(files));
+ * }</pre>
+ * </p>
+ *
+ * @see FileSystem
+ * @see AsyncFileSystemAdapter
+ */
+public interface AsyncFileSystem<T> {
+
+    /**
+     * Returns an asynchronous view of the specified {@code fileSystem} that runs its
+     * operations on the specified {@code executor}.
+     *
+     * @param fileSystem file system to be wrapped
+     * @param executor executor that runs the operations of the file system
+     *
+     * @return asynchronous view of the {@code fileSystem}
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     */
+    static <T> AsyncFileSystem<T> wrap(final FileSystem<T> fileSystem, final Executor executor) {
+        return new AsyncFileSystemAdapter<>(fileSystem, executor);
+    }
+
+    /**
+     * Asynchronously executes {@link FileSystem#upload(String, String)}.
+     */
+    CompletableFuture<Void> upload(final String filePath, final String destinationPath);
+
+    /**
+     * Asynchronously executes {@link FileSystem#upload(String, FileMetaData, String)}.
+     */
+    CompletableFuture<Void> upload(final String filePath, final FileMetaData fileMetaData,
+                                   final String destinationPath);
+
+    /**
+     * Asynchronously executes {@link FileSystem#uploadCollection(List, String)}.
+     */
+    CompletableFuture<Void> uploadCollection(final List<String> filePaths, final String destinationPath);
+
+    /**
+     * Asynchronously executes {@link FileSystem#download(String)}.
+     */
+    CompletableFuture<Void> download(final String path);
+
+    /**
+     * Asynchronously executes {@link FileSystem#downloadMultiple(List)}.
+     */
+    CompletableFuture<Void> downloadMultiple(final List<String> paths);
+
+    /**
+     * Asynchronously executes {@link FileSystem#createDir(String)}.
+     */
+    CompletableFuture<Void> createDir(final String dirPath);
+
+    /**
+     * Asynchronously executes {@link FileSystem#findAll()}.
+     */
+    CompletableFuture<List<T>> findAll();
+
+    /**
+     * Asynchronously executes {@link FileSystem#findFileByName(String)}.
+     */
+    CompletableFuture<List<T>> findFileByName(final String name);
+
+    /**
+     * Asynchronously executes {@link FileSystem#findFileByExtension(String)}.
+     */
+    CompletableFuture<List<T>> findFileByExtension(final String extension);
+
+    /**
+     * Asynchronously executes {@link FileSystem#findFileByParent(Object)}.
+     */
+    CompletableFuture<List<T>> findFileByParent(final T parent);
+
+    /**
+     * Asynchronously executes {@link FileSystem#findDirectory(String)}.
+     */
+    CompletableFuture<List<T>> findDirectory(final String name);
+}
@@ -0,0 +1,102 @@
+package system;
+
+import meta.FileMetaData;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static util.Preconditions.checkNotNull;
+
+/**
+ * {@link AsyncFileSystem} that runs the operations of a synchronous {@link FileSystem}
+ * on an {@link Executor}.
+ *
+ * <p>
+ * The wrapped file system has to support concurrent calls if the executor
+ * runs more than one operation at a time.
+ * </p>
+ *
+ * @see AsyncFileSystem#wrap(FileSystem, Executor)
+ */
+public class AsyncFileSystemAdapter<T> implements AsyncFileSystem<T> {
+
+    private final FileSystem<T> fileSystem;
+
+    private final Executor executor;
+
+    /**
+     * Constructs an asynchronous view of the specified {@code fileSystem} that runs
+     * its operations on the specified {@code executor}.
+     *
+     * @param fileSystem file system to be wrapped
+     * @param executor executor that runs the operations of the file system
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     */
+    public AsyncFileSystemAdapter(final FileSystem<T> fileSystem, final Executor executor) {
+        this.fileSystem = checkNotNull(fileSystem);
+        this.executor = checkNotNull(executor);
+    }
+
+    public FileSystem<T> getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public CompletableFuture<Void> upload(final String filePath, final String destinationPath) {
+        return CompletableFuture.runAsync(() -> fileSystem.upload(filePath, destinationPath), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> upload(final String filePath, final FileMetaData fileMetaData,
+                                          final String destinationPath) {
+        return CompletableFuture.runAsync(() -> fileSystem.upload(filePath, fileMetaData, destinationPath), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadCollection(final List<String> filePaths, final String destinationPath) {
+        return CompletableFuture.runAsync(() -> fileSystem.uploadCollection(filePaths, destinationPath), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> download(final String path) {
+        return CompletableFuture.runAsync(() -> fileSystem.download(path), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> downloadMultiple(final List<String> paths) {
+        return CompletableFuture.runAsync(() -> fileSystem.downloadMultiple(paths), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> createDir(final String dirPath) {
+        return CompletableFuture.runAsync(() -> fileSystem.createDir(dirPath), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll() {
+        return CompletableFuture.supplyAsync(fileSystem::findAll, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findFileByName(final String name) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.findFileByName(name), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findFileByExtension(final String extension) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.findFileByExtension(extension), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findFileByParent(final T parent) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.findFileByParent(parent), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findDirectory(final String name) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.findDirectory(name), executor);
+    }
+
+}
@@ -0,0 +1,167 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static util.Preconditions.*;
+
+/**
+ * Progress handle of a batch of file transfers that run concurrently.
+ *
+ * <p>
+ * Files of the batch are transferred on the given {@link Executor} with at most
+ * {@code parallelism} transfers in flight at any time. Every file produces its
+ * own {@link TransferResult}, so a single failure doesn't abort the batch. Once
+ * all files are transferred the {@link #getResult()} future completes with the
+ * results in the same order as the transferred paths.
+ * </p>
+ *
+ * <p>
+ * A batch can be stopped with {@link #cancel()}. Transfers that are already in
+ * flight run to completion, and the files that weren't started fail with a
+ * {@link CancellationException}.
+ * </p>
+ *
+ * @see FileSystem#uploadCollection(List, String, Executor, int)
+ * @see FileSystem#downloadMultiple(List, Executor, int)
+ */
+public class BatchTransfer {
+
+    private final List<String> paths;
+
+    private final Consumer<String> transfer;
+
+    private final TransferResult[] results;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicInteger completed = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+
+    private final CompletableFuture<List<TransferResult>> result = new CompletableFuture<>();
+
+    private volatile boolean cancelled;
+
+    private BatchTransfer(final List<String> paths, final Consumer<String> transfer) {
+        this.paths = paths;
+        this.transfer = transfer;
+        this.results = new TransferResult[paths.size()];
+    }
+
+    /**
+     * Starts transferring the specified {@code paths} with the specified {@code transfer}
+     * operation on the {@code executor}, with at most {@code parallelism} transfers in flight.
+     *
+     * @exception NullPointerException if one of the specified parameters, or one of
+     * the {@code paths}, is null
+     * @exception IllegalArgumentException if the {@code parallelism} isn't positive
+     */
+    static BatchTransfer start(final List<String> paths, final Consumer<String> transfer,
+                               final Executor executor, final int parallelism) {
+        checkNotNull(paths, transfer, executor);
+        checkArgument(parallelism > 0, "Parallelism must be positive!");
+
+        // Paths are copied, so the batch isn't affected if the caller changes the list.
+        final List<String> copy = new ArrayList<>(paths);
+
+        copy.forEach(path -> checkNotNull(path, "Paths can't contain null!"));
+
+        final BatchTransfer batch = new BatchTransfer(copy, transfer);
+
+        final int workers = Math.min(parallelism, copy.size());
+
+        if (workers == 0)
+            batch.result.complete(Collections.emptyList());
+
+        batch.runningWorkers.set(workers);
+
+        for (int i = 0; i < workers; i++) {
+            try {
+                executor.execute(batch::work);
+            } catch (final RuntimeException ex) {
+                batch.cancel();
+                batch.result.completeExceptionally(ex);
+                break;
+            }
+        }
+
+        return batch;
+    }
+
+    // Every worker keeps taking the next file until none are left, which
+    // bounds the number of transfers in flight to the number of workers.
+    private void work() {
+        try {
+            int index;
+
+            while ((index = next.getAndIncrement()) < results.length) {
+                final String path = paths.get(index);
+
+                results[index] = cancelled
+                        ? TransferResult.failure(path, new CancellationException("Batch transfer was cancelled!"))
+                        : transfer(path);
+
+                if (!results[index].isSuccessful())
+                    failed.incrementAndGet();
+
+                completed.incrementAndGet();
+            }
+        } finally {
+            if (runningWorkers.decrementAndGet() == 0)
+                result.complete(Collections.unmodifiableList(Arrays.asList(results)));
+        }
+    }
+
+    private TransferResult transfer(final String path) {
+        try {
+            transfer.accept(path);
+
+            return TransferResult.success(path);
+        } catch (final Throwable ex) {
+            // Errors fail only their own file too, so the batch always completes.
+            return TransferResult.failure(path, ex);
+        }
+    }
+
+    /**
+     * Stops starting new transfers of this batch. Transfers in flight are not interrupted.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return future that completes with the results of all transfers
+     * once the whole batch is done
+     */
+    public CompletableFuture<List<TransferResult>> getResult() {
+        return result;
+    }
+
+    public int getTotal() {
+        return results.length;
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+}
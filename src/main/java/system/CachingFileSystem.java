@@ -0,0 +1,466 @@
+package system;
+
+import meta.FileMetaData;
+import meta.MetaDataQuery;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static util.Preconditions.*;
+
+/**
+ * {@link FileSystem} decorator that keeps the content of recently downloaded files
+ * in memory, so downloading them again doesn't reach the wrapped file system.
+ *
+ * <p>
+ * The cache is bounded by the total size of the cached files, not their number, and
+ * files larger than the maximum entry size are never cached. It's a segmented LRU
+ * cache: files enter a probation segment and move to a protected segment, which
+ * takes most of the budget, when they are downloaded again. Only files on probation
+ * are evicted, so a burst of files that are downloaded once doesn't evict the files
+ * that are downloaded often. Evicted files can be kept in an optional tier on the
+ * local disk, with its own budget, before they are dropped. Ranges of cached files
+ * are served from the cache as well.
+ * </p>
+ *
+ * <p>
+ * Uploading or deleting a file removes every cached file with the same name, whatever
+ * path it was downloaded by, so a download never returns content older than the last
+ * upload through this decorator. Changes made to the wrapped file system directly are not
+ * noticed. The counters of hits, misses and evictions show how well the cache is
+ * sized. For example
+ *
+ * <pre>{@code
+ * CachingFileSystem<File> fileSystem = new CachingFileSystem.CachingFileSystemBuilder<>(new LocalFileSystem())
+ *         .capacity(256 * 1024 * 1024)
+ *         .diskTier(Paths.get("cache"), 4L * 1024 * 1024 * 1024)
+ *         .build();
+ * }</pre>
+ * </p>
+ *
+ * @see FileSystem
+ */
+public class CachingFileSystem<T> implements FileSystem<T> {
+
+    /**
+     * Default number of bytes cached in memory.
+     */
+    public static final long DEFAULT_CAPACITY = 64 * 1024 * 1024;
+
+    /**
+     * Default share of the capacity taken by the protected segment.
+     */
+    public static final double DEFAULT_PROTECTED_RATIO = 0.8;
+
+    /**
+     * Size of the largest file that can be cached, since a cached file is held in a
+     * single array.
+     */
+    public static final long MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final FileSystem<T> fileSystem;
+
+    private final SegmentedCache cache;
+
+    private final long capacity;
+
+    private CachingFileSystem(final CachingFileSystemBuilder<T> builder) {
+        this.fileSystem   = builder.fileSystem;
+        this.capacity     = builder.capacity;
+
+        final long maxEntrySize = builder.maxEntrySize < 0 ? Math.min(capacity / 8, MAX_ENTRY_SIZE)
+                : builder.maxEntrySize;
+
+        this.cache = new SegmentedCache(capacity, builder.protectedRatio, maxEntrySize,
+                builder.diskDirectory, builder.diskCapacity);
+    }
+
+    public FileSystem<T> getFileSystem() {
+        return fileSystem;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getMaxEntrySize() {
+        return cache.getMaxEntrySize();
+    }
+
+    /**
+     * @return number of downloads served from memory
+     */
+    public long getHitCount() {
+        return cache.getHits();
+    }
+
+    /**
+     * @return number of downloads served from the disk tier
+     */
+    public long getDiskHitCount() {
+        return cache.getDiskHits();
+    }
+
+    /**
+     * @return number of downloads of files that weren't cached
+     */
+    public long getMissCount() {
+        return cache.getMisses();
+    }
+
+    /**
+     * @return number of files dropped from the cache to make room for others
+     */
+    public long getEvictionCount() {
+        return cache.getEvictions();
+    }
+
+    /**
+     * @return number of bytes cached in memory
+     */
+    public long getCachedSize() {
+        return cache.getSize();
+    }
+
+    /**
+     * @return number of bytes cached in the disk tier
+     */
+    public long getDiskCachedSize() {
+        return cache.getDiskSize();
+    }
+
+    @Override
+    public void initialize() {
+        fileSystem.initialize();
+    }
+
+    /**
+     * Terminates the wrapped file system and empties the cache, since the files can
+     * change before the system is initialized again.
+     */
+    @Override
+    public void terminate() {
+        cache.clear();
+
+        fileSystem.terminate();
+    }
+
+    @Override
+    public void excludeFileExtension(final String fileExtension) {
+        fileSystem.excludeFileExtension(fileExtension);
+    }
+
+    @Override
+    public void upload(final String filePath, final String destinationPath) {
+        checkNotNull(filePath);
+
+        invalidate(filePath);
+
+        try {
+            fileSystem.upload(filePath, destinationPath);
+        } finally {
+            invalidate(filePath);
+        }
+    }
+
+    @Override
+    public void upload(final String filePath, final FileMetaData fileMetaData, final String destinationPath) {
+        checkNotNull(filePath);
+
+        invalidate(filePath);
+
+        try {
+            fileSystem.upload(filePath, fileMetaData, destinationPath);
+        } finally {
+            invalidate(filePath);
+        }
+    }
+
+    @Override
+    public void uploadCollection(final List<String> filePaths, final String destinationPath) {
+        checkNotNull(filePaths);
+        checkNotNull(destinationPath);
+
+        filePaths.forEach(filePath -> upload(filePath, destinationPath));
+    }
+
+    @Override
+    public void uploadRange(final String filePath, final long offset, final long length,
+                            final String destinationPath) {
+        checkNotNull(filePath);
+
+        invalidate(filePath);
+
+        try {
+            fileSystem.uploadRange(filePath, offset, length, destinationPath);
+        } finally {
+            invalidate(filePath);
+        }
+    }
+
+    /**
+     * Removes cached files with the name of the uploaded or deleted file. Invalidating
+     * afterwards as well keeps downloads that ran in the meantime from caching the file.
+     */
+    private void invalidate(final String filePath) {
+        cache.invalidate(new File(filePath).getName());
+    }
+
+    /**
+     * Downloads the file to the download directory of the wrapped file system, through
+     * the cache.
+     */
+    @Override
+    public void download(final String path) {
+        download(path, fileSystem.getDownloadPath());
+    }
+
+    @Override
+    public void download(final String path, final String destinationPath) {
+        checkNotNull(path);
+        checkNotNull(destinationPath);
+
+        final String key = normalize(path);
+        final Path name = Paths.get(key).getFileName();
+
+        if (name == null) {
+            fileSystem.download(path, destinationPath);
+
+            return;
+        }
+
+        final Path destination = Paths.get(destinationPath).resolve(name.toString());
+
+        try {
+            final byte[] cached = cache.get(key);
+
+            if (cached != null) {
+                Files.createDirectories(destination.getParent());
+                Files.write(destination, cached);
+
+                return;
+            }
+
+            final long generation = cache.generation();
+
+            fileSystem.download(path, destinationPath);
+
+            // Directories and large files are downloaded without caching them.
+            if (Files.isRegularFile(destination) && Files.size(destination) <= cache.getMaxEntrySize())
+                cache.put(key, Files.readAllBytes(destination), generation);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public long download(final String path, final long offset, final long length, final OutputStream output) {
+        checkNotNull(path);
+        checkNotNull(output);
+        checkArgument(offset >= 0 && length >= 0, "Offset and length can't be negative!");
+
+        final byte[] cached = cache.get(normalize(path));
+
+        if (cached == null)
+            return fileSystem.download(path, offset, length, output);
+
+        final int from = (int) Math.min(offset, cached.length);
+        final int count = (int) Math.min(length, cached.length - from);
+
+        try {
+            output.write(cached, from, count);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return count;
+    }
+
+    @Override
+    public long size(final String path) {
+        return fileSystem.size(path);
+    }
+
+    @Override
+    public FileMetaData getFileMetaData(final String path) {
+        return fileSystem.getFileMetaData(path);
+    }
+
+    @Override
+    public String resolveDestination(final String destinationPath) {
+        return fileSystem.resolveDestination(destinationPath);
+    }
+
+    @Override
+    public String getDownloadPath() {
+        return fileSystem.getDownloadPath();
+    }
+
+    @Override
+    public void downloadMultiple(final List<String> paths) {
+        checkNotNull(paths);
+
+        paths.forEach(this::download);
+    }
+
+    @Override
+    public void delete(final String path) {
+        checkNotNull(path);
+
+        invalidate(path);
+
+        try {
+            fileSystem.delete(path);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public void createDir(final String dirPath) {
+        fileSystem.createDir(dirPath);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return fileSystem.findAll();
+    }
+
+    @Override
+    public List<T> findFileByName(final String name) {
+        return fileSystem.findFileByName(name);
+    }
+
+    @Override
+    public List<T> findFileByExtension(final String extension) {
+        return fileSystem.findFileByExtension(extension);
+    }
+
+    @Override
+    public List<T> findFileByParent(final T parent) {
+        return fileSystem.findFileByParent(parent);
+    }
+
+    @Override
+    public List<T> findDirectory(final String name) {
+        return fileSystem.findDirectory(name);
+    }
+
+    @Override
+    public List<T> findFileByMetaData(final MetaDataQuery query) {
+        return fileSystem.findFileByMetaData(query);
+    }
+
+    @Override
+    public Stream<T> streamAll() {
+        return fileSystem.streamAll();
+    }
+
+    @Override
+    public Stream<T> streamFileByName(final String name) {
+        return fileSystem.streamFileByName(name);
+    }
+
+    @Override
+    public Stream<T> streamFileByExtension(final String extension) {
+        return fileSystem.streamFileByExtension(extension);
+    }
+
+    @Override
+    public Stream<T> streamFileByParent(final T parent) {
+        return fileSystem.streamFileByParent(parent);
+    }
+
+    @Override
+    public Stream<T> streamDirectory(final String name) {
+        return fileSystem.streamDirectory(name);
+    }
+
+    private static String normalize(final String path) {
+        return path.replace('\\', '/').replaceAll("/{2,}", "/").replaceAll("^/|/$", "");
+    }
+
+    public static class CachingFileSystemBuilder<T> {
+
+        private final FileSystem<T> fileSystem;
+
+        private long capacity = DEFAULT_CAPACITY;
+
+        private long maxEntrySize = -1;
+
+        private double protectedRatio = DEFAULT_PROTECTED_RATIO;
+
+        private Path diskDirectory;
+
+        private long diskCapacity;
+
+
+        public CachingFileSystemBuilder(final FileSystem<T> fileSystem) {
+            this.fileSystem = checkNotNull(fileSystem);
+        }
+
+        /**
+         * Sets the number of bytes cached in memory.
+         */
+        public CachingFileSystemBuilder<T> capacity(final long capacity) {
+            checkArgument(capacity > 0, "Capacity must be positive!");
+
+            this.capacity = capacity;
+
+            return this;
+        }
+
+        /**
+         * Sets the size of the largest cached file, an eighth of the capacity by default.
+         * Sizes above {@link #MAX_ENTRY_SIZE} are lowered to it.
+         */
+        public CachingFileSystemBuilder<T> maxEntrySize(final long maxEntrySize) {
+            checkArgument(maxEntrySize >= 0, "Maximum entry size can't be negative!");
+
+            this.maxEntrySize = Math.min(maxEntrySize, MAX_ENTRY_SIZE);
+
+            return this;
+        }
+
+        /**
+         * Sets the share of the capacity taken by files that were downloaded more than once.
+         */
+        public CachingFileSystemBuilder<T> protectedRatio(final double protectedRatio) {
+            checkArgument(protectedRatio >= 0 && protectedRatio < 1, "Protected ratio must be between 0 and 1!");
+
+            this.protectedRatio = protectedRatio;
+
+            return this;
+        }
+
+        /**
+         * Keeps files evicted from memory in the specified {@code directory}, up to
+         * {@code capacity} bytes. Cache files left in the directory by a previous
+         * instance are deleted.
+         */
+        public CachingFileSystemBuilder<T> diskTier(final Path directory, final long capacity) {
+            checkNotNull(directory);
+            checkArgument(capacity > 0, "Capacity must be positive!");
+
+            this.diskDirectory = directory.toAbsolutePath();
+            this.diskCapacity = capacity;
+
+            return this;
+        }
+
+        public CachingFileSystem<T> build() {
+            checkArgument(maxEntrySize <= capacity, "Maximum entry size can't exceed the capacity!");
+
+            return new CachingFileSystem<>(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,652 @@
+package system;
+
+import compression.Compression;
+import compression.Decompression;
+import exceptions.FileNotFoundException;
+import meta.FileMetaData;
+import meta.MetaDataQuery;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static util.Preconditions.*;
+
+/**
+ * {@link FileSystem} decorator that compresses files on upload and decompresses
+ * them on download.
+ *
+ * <p>
+ * Files at least as large as the configured threshold are compressed with the
+ * configured format before they are uploaded to the wrapped file system, and are
+ * stored under their original name with the extension of the format appended.
+ * The format is recorded in the {@link FileMetaData#getCompression()} of every
+ * compressed file. Files that are smaller than the threshold, or are already
+ * compressed, are uploaded as they are.
+ * </p>
+ *
+ * <p>
+ * A file is stored either compressed or as it is, never both: every upload deletes
+ * the copy that an earlier upload of the same file stored the other way, or with
+ * another format. Downloading a file by its original name transparently decompresses
+ * it with the format recorded in its meta data, so callers don't have to know
+ * whether, or how, a file was compressed. Only files compressed by this decorator
+ * are decompressed. Ranges are uploaded uncompressed. A range of a compressed file
+ * is decompressed as it's read, reading the compressed file in ranges up to the end
+ * of the range, without a temporary copy, and the size of a compressed file is
+ * recorded in its meta data when it's uploaded.
+ * </p>
+ *
+ * <p>
+ * The {@code find} and {@code stream} methods are the exception. They return files
+ * as they are stored by the wrapped file system, so a compressed file is found under
+ * its stored name, with the extension of its format appended, and
+ * {@link #findFileByExtension(String)} finds it by that extension rather than its
+ * own. Only {@link #findFileByName(String)} also finds files compressed with the
+ * configured format by their original name. For example
+ *
+ * <pre>{@code
+ * FileSystem<File> fileSystem = new CompressingFileSystem.CompressingFileSystemBuilder<>(new LocalFileSystem())
+ *         .extension(".lz4")
+ *         .threshold(64 * 1024)
+ *         .build();
+ * }</pre>
+ * </p>
+ *
+ * @see FileSystem
+ * @see Compression
+ */
+public class CompressingFileSystem<T> implements FileSystem<T> {
+
+    /**
+     * Default extension of the compression format.
+     */
+    public static final String DEFAULT_EXTENSION = ".gz";
+
+    /**
+     * Default size in bytes of the smallest file that is compressed.
+     */
+    public static final long DEFAULT_THRESHOLD = 4 * 1024;
+
+    // Size of the ranges that compressed files are read in.
+    private static final int RANGE_SIZE = 256 * 1024;
+
+    private final FileSystem<T> fileSystem;
+
+    private final String extension;
+
+    private final long threshold;
+
+    private CompressingFileSystem(final CompressingFileSystemBuilder<T> builder) {
+        this.fileSystem = builder.fileSystem;
+        this.extension  = builder.extension;
+        this.threshold  = builder.threshold;
+    }
+
+    public FileSystem<T> getFileSystem() {
+        return fileSystem;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public void initialize() {
+        fileSystem.initialize();
+    }
+
+    @Override
+    public void terminate() {
+        fileSystem.terminate();
+    }
+
+    @Override
+    public void excludeFileExtension(final String fileExtension) {
+        fileSystem.excludeFileExtension(fileExtension);
+    }
+
+    @Override
+    public void upload(final String filePath, final String destinationPath) {
+        checkNotNull(filePath);
+        checkNotNull(destinationPath);
+
+        final File file = new File(filePath);
+
+        if (!shouldCompress(file)) {
+            fileSystem.upload(filePath, destinationPath);
+
+            deleteVariants(pathOf(destinationPath, file.getName()), null);
+
+            return;
+        }
+
+        uploadCompressed(file, new FileMetaData.FileMetaDataBuilder().fileName(file.getName()), destinationPath);
+    }
+
+    @Override
+    public void upload(final String filePath, final FileMetaData fileMetaData, final String destinationPath) {
+        checkNotNull(filePath, fileMetaData, destinationPath);
+
+        final File file = new File(filePath);
+
+        if (!shouldCompress(file)) {
+            fileSystem.upload(filePath, fileMetaData, destinationPath);
+
+            deleteVariants(pathOf(destinationPath, file.getName()), null);
+
+            return;
+        }
+
+        uploadCompressed(file, new FileMetaData.FileMetaDataBuilder(fileMetaData), destinationPath);
+    }
+
+    @Override
+    public void uploadCollection(final List<String> filePaths, final String destinationPath) {
+        checkNotNull(filePaths);
+        checkNotNull(destinationPath);
+
+        filePaths.forEach(filePath -> upload(filePath, destinationPath));
+    }
+
+    private boolean shouldCompress(final File file) {
+        checkFile(file, "File to be uploaded wasn't found!");
+
+        return file.isFile() && file.length() >= threshold && !Compression.isSupported(file.getPath());
+    }
+
+    private void uploadCompressed(final File file, final FileMetaData.FileMetaDataBuilder metaData,
+                                  final String destinationPath) {
+        final Path temporaryDirectory = createTemporaryDirectory();
+
+        try {
+            final Path compressed = temporaryDirectory.resolve(file.getName() + extension);
+            final long size = file.length();
+
+            try (final InputStream input = Files.newInputStream(file.toPath());
+                 final OutputStream output = Files.newOutputStream(compressed)) {
+                Compression.compress(input, output, extension);
+            }
+
+            fileSystem.upload(compressed.toString(), metaData.compression(extension).uncompressedSize(size).build(),
+                    destinationPath);
+
+            deleteVariants(pathOf(destinationPath, file.getName()), extension);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            delete(temporaryDirectory);
+        }
+    }
+
+    /**
+     * Uploads the range as it is, since a part of a file can't be compressed on its own.
+     * The first range replaces the file, so it deletes its compressed copy.
+     */
+    @Override
+    public void uploadRange(final String filePath, final long offset, final long length,
+                            final String destinationPath) {
+        fileSystem.uploadRange(filePath, offset, length, destinationPath);
+
+        if (offset == 0)
+            deleteVariants(pathOf(destinationPath, new File(filePath).getName()), null);
+    }
+
+    /**
+     * Deletes the copies of the file on the {@code path} that earlier uploads stored in
+     * another way than the {@code compression} format the file was just uploaded with,
+     * or as it is if it's null, so they aren't downloaded or found instead of it.
+     */
+    private void deleteVariants(final String path, final String compression) {
+        if (compression != null) {
+            try {
+                fileSystem.delete(path);
+            } catch (final FileNotFoundException ex) {
+                // File wasn't stored as it is.
+            }
+        }
+
+        for (final String candidate : candidates()) {
+            if (!candidate.equals(compression) && isCompressedWith(path, candidate))
+                fileSystem.delete(path + candidate);
+        }
+    }
+
+    /**
+     * @return path that the wrapped file system stores the file with the specified
+     * {@code name} under when it's uploaded to the {@code destinationPath}
+     */
+    private String pathOf(final String destinationPath, final String name) {
+        final String directory = fileSystem.resolveDestination(destinationPath);
+
+        return directory.isEmpty() ? name : directory + "/" + name;
+    }
+
+    /**
+     * Downloads the file to the download directory of the wrapped file system, where
+     * the wrapped file system would download it.
+     */
+    @Override
+    public void download(final String path) {
+        download(path, fileSystem.getDownloadPath());
+    }
+
+    @Override
+    public void download(final String path, final String destinationPath) {
+        checkNotNull(path);
+        checkNotNull(destinationPath);
+
+        final String compression = compressionOf(path);
+
+        if (compression == null)
+            fileSystem.download(path, destinationPath);
+        else
+            downloadDecompressed(path, compression, Paths.get(destinationPath));
+    }
+
+    /**
+     * Downloads the file on the {@code path}, which is stored compressed with the
+     * {@code compression} format, and decompresses it into the {@code destination}
+     * directory.
+     */
+    private void downloadDecompressed(final String path, final String compression, final Path destination) {
+        final Path temporaryDirectory = createTemporaryDirectory();
+
+        try {
+            fileSystem.download(path + compression, temporaryDirectory.toString());
+
+            final String name = Paths.get(path).getFileName().toString();
+
+            Files.createDirectories(destination);
+
+            try (final InputStream input = Files.newInputStream(temporaryDirectory.resolve(name + compression));
+                 final OutputStream output = Files.newOutputStream(destination.resolve(name))) {
+                Decompression.decompress(input, output, compression);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            delete(temporaryDirectory);
+        }
+    }
+
+    @Override
+    public long download(final String path, final long offset, final long length, final OutputStream output) {
+        checkNotNull(path);
+        checkNotNull(output);
+        checkArgument(offset >= 0 && length >= 0, "Offset and length can't be negative!");
+
+        final String compression = compressionOf(path);
+
+        if (compression == null)
+            return fileSystem.download(path, offset, length, output);
+
+        try (final InputStream input = Decompression.decompressingStream(
+                new RangeInputStream(path + compression), compression)) {
+            if (skip(input, offset) < offset)
+                return 0;
+
+            final byte[] buffer = new byte[RANGE_SIZE];
+
+            long written = 0;
+
+            while (written < length) {
+                final int read = input.read(buffer, 0, (int) Math.min(buffer.length, length - written));
+
+                if (read < 0)
+                    break;
+
+                output.write(buffer, 0, read);
+
+                written += read;
+            }
+
+            return written;
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Skips up to {@code count} bytes of the {@code input}.
+     *
+     * @return number of skipped bytes, which is less than {@code count} only at the end of the input
+     */
+    private static long skip(final InputStream input, final long count) throws IOException {
+        long skipped = 0;
+
+        while (skipped < count) {
+            final long step = input.skip(count - skipped);
+
+            if (step > 0) {
+                skipped += step;
+            } else if (input.read() >= 0) {
+                // Streams may skip nothing before the end, so a read tells whether the end was reached.
+                skipped++;
+            } else {
+                break;
+            }
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public long size(final String path) {
+        checkNotNull(path);
+
+        final String compression = compressionOf(path);
+
+        if (compression == null)
+            return fileSystem.size(path);
+
+        final FileMetaData metaData = fileSystem.getFileMetaData(path + compression);
+
+        if (metaData.getUncompressedSize() != null)
+            return metaData.getUncompressedSize();
+
+        // Files uploaded before sizes were recorded are measured by decompressing them.
+        try (final InputStream input = Decompression.decompressingStream(
+                new RangeInputStream(path + compression), compression)) {
+            return skip(input, Long.MAX_VALUE);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the extension of the format that the file on the {@code path} was
+     * compressed with when this decorator uploaded it, or null if it's stored as it
+     * is. Compressed files are stored with the extension appended and recorded in
+     * their meta data, so files that only have a compression extension, and files
+     * uploaded while another format was configured, are told apart.
+     */
+    private String compressionOf(final String path) {
+        for (final String candidate : candidates()) {
+            if (isCompressedWith(path, candidate))
+                return candidate;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return extensions of the formats a file could have been compressed with, the
+     * configured format first
+     */
+    private Set<String> candidates() {
+        final Set<String> candidates = new LinkedHashSet<>();
+
+        candidates.add(extension);
+        candidates.addAll(Compression.getSupportedExtensions());
+
+        return candidates;
+    }
+
+    private boolean isCompressedWith(final String path, final String compression) {
+        try {
+            final FileMetaData metaData = fileSystem.getFileMetaData(path + compression);
+
+            return metaData != null && compression.equals(metaData.getCompression());
+        } catch (final FileNotFoundException ex) {
+            // File wasn't compressed with this format.
+            return false;
+        }
+    }
+
+    @Override
+    public FileMetaData getFileMetaData(final String path) {
+        checkNotNull(path);
+
+        final String compression = compressionOf(path);
+
+        return fileSystem.getFileMetaData(compression == null ? path : path + compression);
+    }
+
+    @Override
+    public String resolveDestination(final String destinationPath) {
+        return fileSystem.resolveDestination(destinationPath);
+    }
+
+    @Override
+    public String getDownloadPath() {
+        return fileSystem.getDownloadPath();
+    }
+
+    @Override
+    public void downloadMultiple(final List<String> paths) {
+        checkNotNull(paths);
+
+        paths.forEach(this::download);
+    }
+
+    @Override
+    public void delete(final String path) {
+        checkNotNull(path);
+
+        final String compression = compressionOf(path);
+
+        fileSystem.delete(compression == null ? path : path + compression);
+    }
+
+    @Override
+    public void createDir(final String dirPath) {
+        fileSystem.createDir(dirPath);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return fileSystem.findAll();
+    }
+
+    @Override
+    public List<T> findFileByName(final String name) {
+        checkNotNull(name);
+
+        final List<T> found = new ArrayList<>(fileSystem.findFileByName(name));
+
+        found.addAll(fileSystem.findFileByName(name + extension));
+
+        return found;
+    }
+
+    @Override
+    public List<T> findFileByExtension(final String extension) {
+        return fileSystem.findFileByExtension(extension);
+    }
+
+    @Override
+    public List<T> findFileByParent(final T parent) {
+        return fileSystem.findFileByParent(parent);
+    }
+
+    @Override
+    public List<T> findDirectory(final String name) {
+        return fileSystem.findDirectory(name);
+    }
+
+    @Override
+    public List<T> findFileByMetaData(final MetaDataQuery query) {
+        return fileSystem.findFileByMetaData(query);
+    }
+
+    @Override
+    public Stream<T> streamAll() {
+        return fileSystem.streamAll();
+    }
+
+    @Override
+    public Stream<T> streamFileByExtension(final String extension) {
+        return fileSystem.streamFileByExtension(extension);
+    }
+
+    @Override
+    public Stream<T> streamFileByParent(final T parent) {
+        return fileSystem.streamFileByParent(parent);
+    }
+
+    @Override
+    public Stream<T> streamDirectory(final String name) {
+        return fileSystem.streamDirectory(name);
+    }
+
+    /**
+     * Stream of a file on the wrapped file system, which is downloaded in ranges as
+     * it's read.
+     */
+    private final class RangeInputStream extends InputStream {
+
+        private final String path;
+
+        private final byte[] buffer = new byte[RANGE_SIZE];
+
+        private int position;
+
+        private int limit;
+
+        private long offset;
+
+        private boolean end;
+
+        private RangeInputStream(final String path) {
+            this.path = path;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? buffer[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len) throws IOException {
+            if (len == 0)
+                return 0;
+
+            if (!fill())
+                return -1;
+
+            final int count = Math.min(len, limit - position);
+
+            System.arraycopy(buffer, position, bytes, off, count);
+
+            position += count;
+
+            return count;
+        }
+
+        /**
+         * Downloads the next range once the buffered one was read.
+         *
+         * @return false at the end of the file
+         */
+        private boolean fill() {
+            if (position < limit)
+                return true;
+
+            if (end)
+                return false;
+
+            position = 0;
+            limit = 0;
+
+            final long count = fileSystem.download(path, offset, buffer.length, new OutputStream() {
+
+                @Override
+                public void write(final int b) {
+                    buffer[limit++] = (byte) b;
+                }
+
+                @Override
+                public void write(final byte[] bytes, final int off, final int len) {
+                    System.arraycopy(bytes, off, buffer, limit, len);
+
+                    limit += len;
+                }
+
+            });
+
+            offset += count;
+
+            // A range shorter than requested ends at the end of the file.
+            end = count < buffer.length;
+
+            return limit > 0;
+        }
+
+    }
+
+    private static Path createTemporaryDirectory() {
+        try {
+            return Files.createTempDirectory("sk-file-system");
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void delete(final Path directory) {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public static class CompressingFileSystemBuilder<T> {
+
+        private final FileSystem<T> fileSystem;
+
+        private String extension = DEFAULT_EXTENSION;
+
+        private long threshold = DEFAULT_THRESHOLD;
+
+        public CompressingFileSystemBuilder(final FileSystem<T> fileSystem) {
+            this.fileSystem = checkNotNull(fileSystem);
+        }
+
+        /**
+         * Sets the compression format of uploaded files by its extension. Only formats
+         * that compress a single file, like {@code .gz} or {@code .lz4}, can be used.
+         */
+        public CompressingFileSystemBuilder<T> extension(final String extension) {
+            checkNotNull(extension);
+
+            final String normalized = extension.startsWith(".") ? extension : "." + extension;
+
+            checkArgument(Compression.isSupportedForStreams(normalized),
+                    "Compression format isn't supported for single files!");
+
+            this.extension = normalized;
+
+            return this;
+        }
+
+        public CompressingFileSystemBuilder<T> threshold(final long threshold) {
+            checkArgument(threshold >= 0, "Threshold can't be negative!");
+
+            this.threshold = threshold;
+
+            return this;
+        }
+
+        public CompressingFileSystem<T> build() {
+            return new CompressingFileSystem<>(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,314 @@
+package system;
+
+import meta.FileMetaData;
+import meta.MetaDataQuery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static util.Preconditions.*;
+
+/**
+ * {@link FileSystem} decorator that makes transfers fail at random, for testing how
+ * callers recover from failures.
+ *
+ * <p>
+ * Every upload and download fails with the configured probability by throwing an
+ * {@link UncheckedIOException}, like a broken connection would. Range transfers
+ * fail half way through, after half of the range was transferred, so callers are
+ * tested against partially written data as well. Failures are drawn from a
+ * {@link Random} with the configured seed, so a test sees the same failures every
+ * time it runs. Queries and other operations never fail. For example, resuming an
+ * interrupted upload can be verified with
+ *
+ * <pre>{@code
+ * FaultInjectingFileSystem<File> fileSystem = new FaultInjectingFileSystem.FaultInjectingFileSystemBuilder<>(
+ *         new LocalFileSystem(rootPath, downloadPath))
+ *         .failureRate(0.2)
+ *         .seed(42)
+ *         .build();
+ *
+ * ResumableTransfer transfer = new ResumableTransfer.ResumableTransferBuilder(fileSystem).build();
+ * }</pre>
+ * </p>
+ *
+ * @see ResumableTransfer
+ */
+public class FaultInjectingFileSystem<T> implements FileSystem<T> {
+
+    private final FileSystem<T> fileSystem;
+
+    private final double failureRate;
+
+    private final int maxFailures;
+
+    private final Random random;
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private FaultInjectingFileSystem(final FaultInjectingFileSystemBuilder<T> builder) {
+        this.fileSystem  = builder.fileSystem;
+        this.failureRate = builder.failureRate;
+        this.maxFailures = builder.maxFailures;
+        this.random      = new Random(builder.seed);
+    }
+
+    public FileSystem<T> getFileSystem() {
+        return fileSystem;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * @return number of failures injected so far
+     */
+    public int getFailures() {
+        return failures.get();
+    }
+
+    private boolean shouldFail() {
+        final boolean fail;
+
+        synchronized (random) {
+            fail = random.nextDouble() < failureRate;
+        }
+
+        if (!fail)
+            return false;
+
+        // Failures are counted only up to the limit, so the limit is never exceeded.
+        return failures.getAndUpdate(count -> count < maxFailures ? count + 1 : count) < maxFailures;
+    }
+
+    private static UncheckedIOException failure() {
+        return new UncheckedIOException(new IOException("Injected failure"));
+    }
+
+    private void failMaybe() {
+        if (shouldFail())
+            throw failure();
+    }
+
+    @Override
+    public void initialize() {
+        fileSystem.initialize();
+    }
+
+    @Override
+    public void terminate() {
+        fileSystem.terminate();
+    }
+
+    @Override
+    public void excludeFileExtension(final String fileExtension) {
+        fileSystem.excludeFileExtension(fileExtension);
+    }
+
+    @Override
+    public void upload(final String filePath, final String destinationPath) {
+        failMaybe();
+
+        fileSystem.upload(filePath, destinationPath);
+    }
+
+    @Override
+    public void upload(final String filePath, final FileMetaData fileMetaData, final String destinationPath) {
+        failMaybe();
+
+        fileSystem.upload(filePath, fileMetaData, destinationPath);
+    }
+
+    @Override
+    public void uploadCollection(final List<String> filePaths, final String destinationPath) {
+        checkNotNull(filePaths);
+        checkNotNull(destinationPath);
+
+        filePaths.forEach(filePath -> upload(filePath, destinationPath));
+    }
+
+    @Override
+    public void uploadRange(final String filePath, final long offset, final long length,
+                            final String destinationPath) {
+        if (!shouldFail()) {
+            fileSystem.uploadRange(filePath, offset, length, destinationPath);
+
+            return;
+        }
+
+        fileSystem.uploadRange(filePath, offset, length / 2, destinationPath);
+
+        throw failure();
+    }
+
+    @Override
+    public void download(final String path) {
+        failMaybe();
+
+        fileSystem.download(path);
+    }
+
+    @Override
+    public void download(final String path, final String destinationPath) {
+        failMaybe();
+
+        fileSystem.download(path, destinationPath);
+    }
+
+    @Override
+    public long download(final String path, final long offset, final long length, final OutputStream output) {
+        if (!shouldFail())
+            return fileSystem.download(path, offset, length, output);
+
+        fileSystem.download(path, offset, length / 2, output);
+
+        throw failure();
+    }
+
+    @Override
+    public long size(final String path) {
+        return fileSystem.size(path);
+    }
+
+    @Override
+    public FileMetaData getFileMetaData(final String path) {
+        return fileSystem.getFileMetaData(path);
+    }
+
+    @Override
+    public String resolveDestination(final String destinationPath) {
+        return fileSystem.resolveDestination(destinationPath);
+    }
+
+    @Override
+    public String getDownloadPath() {
+        return fileSystem.getDownloadPath();
+    }
+
+    @Override
+    public void downloadMultiple(final List<String> paths) {
+        checkNotNull(paths);
+
+        paths.forEach(this::download);
+    }
+
+    @Override
+    public void delete(final String path) {
+        fileSystem.delete(path);
+    }
+
+    @Override
+    public void createDir(final String dirPath) {
+        fileSystem.createDir(dirPath);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return fileSystem.findAll();
+    }
+
+    @Override
+    public List<T> findFileByName(final String name) {
+        return fileSystem.findFileByName(name);
+    }
+
+    @Override
+    public List<T> findFileByExtension(final String extension) {
+        return fileSystem.findFileByExtension(extension);
+    }
+
+    @Override
+    public List<T> findFileByParent(final T parent) {
+        return fileSystem.findFileByParent(parent);
+    }
+
+    @Override
+    public List<T> findDirectory(final String name) {
+        return fileSystem.findDirectory(name);
+    }
+
+    @Override
+    public List<T> findFileByMetaData(final MetaDataQuery query) {
+        return fileSystem.findFileByMetaData(query);
+    }
+
+    @Override
+    public Stream<T> streamAll() {
+        return fileSystem.streamAll();
+    }
+
+    @Override
+    public Stream<T> streamFileByName(final String name) {
+        return fileSystem.streamFileByName(name);
+    }
+
+    @Override
+    public Stream<T> streamFileByExtension(final String extension) {
+        return fileSystem.streamFileByExtension(extension);
+    }
+
+    @Override
+    public Stream<T> streamFileByParent(final T parent) {
+        return fileSystem.streamFileByParent(parent);
+    }
+
+    @Override
+    public Stream<T> streamDirectory(final String name) {
+        return fileSystem.streamDirectory(name);
+    }
+
+    public static class FaultInjectingFileSystemBuilder<T> {
+
+        private final FileSystem<T> fileSystem;
+
+        private double failureRate = 0.1;
+
+        private int maxFailures = Integer.MAX_VALUE;
+
+        private long seed = System.nanoTime();
+
+        public FaultInjectingFileSystemBuilder(final FileSystem<T> fileSystem) {
+            this.fileSystem = checkNotNull(fileSystem);
+        }
+
+        /**
+         * Sets the probability that a transfer fails, 0.1 by default.
+         */
+        public FaultInjectingFileSystemBuilder<T> failureRate(final double failureRate) {
+            checkArgument(failureRate >= 0 && failureRate <= 1, "Failure rate must be between 0 and 1!");
+
+            this.failureRate = failureRate;
+
+            return this;
+        }
+
+        /**
+         * Sets the number of failures after which all transfers succeed.
+         */
+        public FaultInjectingFileSystemBuilder<T> maxFailures(final int maxFailures) {
+            checkArgument(maxFailures >= 0, "Number of failures can't be negative!");
+
+            this.maxFailures = maxFailures;
+
+            return this;
+        }
+
+        public FaultInjectingFileSystemBuilder<T> seed(final long seed) {
+            this.seed = seed;
+
+            return this;
+        }
+
+        public FaultInjectingFileSystem<T> build() {
+            return new FaultInjectingFileSystem<>(this);
+        }
+
+    }
+
+}
@@ -2,8 +2,14 @@ package system;
 
 import exceptions.FileSystemClosedException;
 import meta.FileMetaData;
+import meta.MetaDataQuery;
 
+import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import static util.Preconditions.checkNotNull;
 
 /**
  * Contains methods that define a file system.
@@ -165,6 +171,62 @@ public interface FileSystem<T> {
      */
     void uploadCollection(final List<String> filePaths, final String destinationPath);
 
+    /**
+     * Concurrently uploads a collection of files, on the given {@code filePaths}
+     * to the specified {@code destinationPath} on this file system.
+     *
+     * <p>
+     * Files are uploaded on the specified {@code executor} with at most
+     * {@code parallelism} uploads in flight at any time. Each file is uploaded
+     * with {@link #upload(String, String)} and produces its own result, so a file
+     * that fails to upload doesn't stop the rest of the collection. Implementations
+     * must support concurrent calls to {@link #upload(String, String)} for this
+     * method to be used.
+     * </p>
+     *
+     * @param filePaths collection of file paths
+     * @param destinationPath desired path for specified {@code files}
+     * @param executor executor that runs the uploads
+     * @param parallelism maximum number of uploads in flight
+     *
+     * @return handle for tracking the progress and results of the uploads
+     *
+     * @exception NullPointerException if one of the specified parameters, or one of
+     * the {@code filePaths}, is null
+     * @exception IllegalArgumentException if the specified {@code parallelism}
+     * isn't positive
+     *
+     * @see BatchTransfer
+     */
+    default BatchTransfer uploadCollection(final List<String> filePaths, final String destinationPath,
+                                           final Executor executor, final int parallelism) {
+        checkNotNull(destinationPath);
+
+        return BatchTransfer.start(filePaths, filePath -> upload(filePath, destinationPath), executor, parallelism);
+    }
+
+    /**
+     * Copies {@code length} bytes of the file on the local machine, starting at the
+     * {@code offset}, to the same offset of the file with the same name in the
+     * {@code destinationPath} directory. The file on the file system is created if it
+     * doesn't exist, and a range at offset 0 replaces an existing file, so a file is
+     * uploaded by uploading its ranges in order. Bytes past the end of the local file
+     * are not copied.
+     *
+     * @param filePath path of the file on the local machine
+     * @param offset position of the first uploaded byte
+     * @param length number of bytes to upload
+     * @param destinationPath directory on the file system that the file is uploaded to
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IllegalArgumentException if the offset or length is negative
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     *
+     * @see ResumableTransfer
+     */
+    void uploadRange(final String filePath, final long offset, final long length, final String destinationPath);
+
     /**
      * Copies file data from the {@code path} on the file system to the local machine.
      * Specified {@code file} can also be a directory.
@@ -179,6 +241,98 @@ public interface FileSystem<T> {
      */
     void download(final String path);
 
+    /**
+     * Copies file data from the {@code path} on the file system to the specified
+     * {@code destinationPath} directory on the local machine. Specified {@code file}
+     * can also be a directory.
+     *
+     * @param path of the file to be downloaded
+     * @param destinationPath directory on the local machine that the file is copied to
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     * @exception exceptions.FileNotFoundException if the specified
+     * {@code file} was not found
+     */
+    void download(final String path, final String destinationPath);
+
+    /**
+     * Writes {@code length} bytes of the file on the {@code path}, starting at the
+     * {@code offset}, to the specified {@code output}, which isn't closed. Bytes past
+     * the end of the file are not written.
+     *
+     * @param path of the file to be downloaded
+     * @param offset position of the first downloaded byte
+     * @param length number of bytes to download
+     * @param output stream that the bytes are written to
+     *
+     * @return number of written bytes
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IllegalArgumentException if the offset or length is negative
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     * @exception exceptions.FileNotFoundException if the specified
+     * {@code file} was not found
+     *
+     * @see ResumableTransfer
+     */
+    long download(final String path, final long offset, final long length, final OutputStream output);
+
+    /**
+     * Returns the size in bytes of the file on the specified {@code path}.
+     *
+     * @param path of the file
+     *
+     * @return size of the file
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     * @exception exceptions.FileNotFoundException if the specified
+     * {@code file} was not found
+     */
+    long size(final String path);
+
+    /**
+     * Returns the meta data that was uploaded with the file on the specified {@code path}.
+     *
+     * @param path path of the file
+     *
+     * @return meta data of the file or null if the file was uploaded without meta data
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     * @exception exceptions.FileNotFoundException if the specified file was not found
+     */
+    FileMetaData getFileMetaData(final String path);
+
+    /**
+     * Returns the path of the directory that files uploaded to the specified
+     * {@code destinationPath} are stored in. Every destination path that refers to
+     * the same directory resolves to the same path, which is relative to the root of
+     * the file system and uses {@code /} as the separator.
+     *
+     * @param destinationPath destination path of an upload
+     *
+     * @return path of the directory, or an empty string for the root
+     *
+     * @exception NullPointerException if the specified {@code destinationPath} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     */
+    String resolveDestination(final String destinationPath);
+
+    /**
+     * Returns the path of the directory on the local machine that
+     * {@link #download(String)} copies files to.
+     *
+     * @return path of the download directory
+     */
+    String getDownloadPath();
+
     /**
      * Copies a collection of file data on the specified {@code paths}
      * from the file system to the local machine.
@@ -192,6 +346,48 @@ public interface FileSystem<T> {
      */
     void downloadMultiple(final List<String> paths);
 
+    /**
+     * Concurrently copies a collection of file data on the specified {@code paths}
+     * from the file system to the local machine.
+     *
+     * <p>
+     * Files are downloaded on the specified {@code executor} with at most
+     * {@code parallelism} downloads in flight at any time. Each file is downloaded
+     * with {@link #download(String)} and produces its own result, so a file that
+     * fails to download doesn't stop the rest of the collection.
+     * </p>
+     *
+     * @param paths collection of file paths to be downloaded
+     * @param executor executor that runs the downloads
+     * @param parallelism maximum number of downloads in flight
+     *
+     * @return handle for tracking the progress and results of the downloads
+     *
+     * @exception NullPointerException if one of the specified parameters, or one of
+     * the {@code paths}, is null
+     * @exception IllegalArgumentException if the specified {@code parallelism}
+     * isn't positive
+     *
+     * @see BatchTransfer
+     */
+    default BatchTransfer downloadMultiple(final List<String> paths, final Executor executor,
+                                           final int parallelism) {
+        return BatchTransfer.start(paths, this::download, executor, parallelism);
+    }
+
+    /**
+     * Deletes the file on the specified {@code path} together with its meta data.
+     * Directories can't be deleted.
+     *
+     * @param path of the file to be deleted
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     * @exception exceptions.FileNotFoundException if the specified file was not found
+     */
+    void delete(final String path);
+
     /**
      * Creates a directory with the specified {@code dirPath}. Directory name
      * is represented by the last component of the specified {@code dirPath}.
@@ -281,4 +477,123 @@ public interface FileSystem<T> {
      * by calling the {@link #terminate()} method
      */
     List<T> findDirectory(final String name);
+
+    /**
+     * Attempts to find all files whose meta data matches the specified {@code query}.
+     * Files uploaded without meta data never match. If there are no matching files
+     * an empty collection will be returned.
+     *
+     * @param query that the meta data of the desired files matches
+     *
+     * @return a collection of all found files on the file system
+     *
+     * @exception NullPointerException if the specified {@code query} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     */
+    List<T> findFileByMetaData(final MetaDataQuery query);
+
+    /**
+     * Lazily produces all files on this file system. If no files
+     * were found an empty stream will be returned.
+     *
+     * <p>
+     * Unlike {@link #findAll()} the files don't have to be collected before the
+     * first one is returned, so callers can process them one by one or stop early
+     * with bounded memory. The default implementation streams the result of
+     * {@link #findAll()} and should be overridden by systems that can do better.
+     * </p>
+     *
+     * @return a stream of all files on the file system
+     *
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     */
+    default Stream<T> streamAll() {
+        return findAll().stream();
+    }
+
+    /**
+     * Lazily produces all files with the specified {@code name}.
+     * If there are no files on the file system with the specified
+     * {@code name} an empty stream will be returned.
+     *
+     * <p>
+     * The default implementation streams the result of {@link #findFileByName(String)}.
+     * </p>
+     *
+     * @param name of the desired file
+     *
+     * @return a stream of all found files on the file system
+     *
+     * @exception NullPointerException if the specified {@code name} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     */
+    default Stream<T> streamFileByName(final String name) {
+        return findFileByName(name).stream();
+    }
+
+    /**
+     * Lazily produces all files with the specified {@code extension}.
+     * If there are no files on the file system with the specified
+     * {@code extension} an empty stream will be returned.
+     *
+     * <p>
+     * The default implementation streams the result of {@link #findFileByExtension(String)}.
+     * </p>
+     *
+     * @param extension of the desired file
+     *
+     * @return a stream of all found files on the file system
+     *
+     * @exception NullPointerException if the specified {@code extension} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     */
+    default Stream<T> streamFileByExtension(final String extension) {
+        return findFileByExtension(extension).stream();
+    }
+
+    /**
+     * Lazily produces all files with the specified {@code parent}
+     * as the parent directory. If there are no files on the file system
+     * that mach the specified {@code parent} an empty stream will be returned.
+     *
+     * <p>
+     * The default implementation streams the result of {@link #findFileByParent(Object)}.
+     * </p>
+     *
+     * @param parent directory of the desired file
+     *
+     * @return a stream of all found files on the file system
+     *
+     * @exception NullPointerException if the specified {@code parent} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     */
+    default Stream<T> streamFileByParent(final T parent) {
+        return findFileByParent(parent).stream();
+    }
+
+    /**
+     * Lazily produces all directories with the specified {@code name}.
+     * If there are no directories on the file system with the specified
+     * {@code name} an empty stream will be returned.
+     *
+     * <p>
+     * The default implementation streams the result of {@link #findDirectory(String)}.
+     * </p>
+     *
+     * @param name of the desired directory
+     *
+     * @return a stream of all found directories on the file system
+     *
+     * @exception NullPointerException if the specified {@code name} is null
+     * @exception FileSystemClosedException if the file system was closed
+     * by calling the {@link #terminate()} method
+     */
+    default Stream<T> streamDirectory(final String name) {
+        return findDirectory(name).stream();
+    }
 }
@@ -0,0 +1,157 @@
+package system;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static util.Preconditions.checkNotNull;
+
+/**
+ * Concurrent in-memory index of the files stored by a {@link LocalFileSystem}.
+ *
+ * <p>
+ * Files are indexed by name, extension and parent directory, and directories
+ * by name, so that every query of the {@link FileSystem} interface is a hash
+ * lookup instead of a walk over the directory tree. All indexed files are
+ * expected to be absolute and normalized.
+ * </p>
+ *
+ * @see LocalFileSystem
+ */
+final class LocalFileIndex {
+
+    private final Set<File> files = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Set<File>> filesByName = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<File>> filesByExtension = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<File>> directoriesByName = new ConcurrentHashMap<>();
+
+    private final Map<File, Set<File>> childrenByParent = new ConcurrentHashMap<>();
+
+    void addFile(final File file) {
+        checkNotNull(file);
+
+        if (!files.add(file))
+            return;
+
+        put(filesByName, file.getName(), file);
+        put(filesByExtension, extensionOf(file.getName()), file);
+        put(childrenByParent, file.getParentFile(), file);
+    }
+
+    void addDirectory(final File directory) {
+        checkNotNull(directory);
+
+        put(directoriesByName, directory.getName(), directory);
+        put(childrenByParent, directory.getParentFile(), directory);
+    }
+
+    void removeFile(final File file) {
+        checkNotNull(file);
+
+        if (!files.remove(file))
+            return;
+
+        remove(filesByName, file.getName(), file);
+        remove(filesByExtension, extensionOf(file.getName()), file);
+        remove(childrenByParent, file.getParentFile(), file);
+    }
+
+    boolean contains(final File file) {
+        return files.contains(file);
+    }
+
+    List<File> findAll() {
+        return new ArrayList<>(files);
+    }
+
+    List<File> findByName(final String name) {
+        return get(filesByName, name);
+    }
+
+    List<File> findByExtension(final String extension) {
+        return get(filesByExtension, extension);
+    }
+
+    List<File> findByParent(final File parent) {
+        return get(childrenByParent, parent);
+    }
+
+    List<File> findDirectory(final String name) {
+        return get(directoriesByName, name);
+    }
+
+    Stream<File> streamAll() {
+        return files.stream();
+    }
+
+    Stream<File> streamByName(final String name) {
+        return stream(filesByName, name);
+    }
+
+    Stream<File> streamByExtension(final String extension) {
+        return stream(filesByExtension, extension);
+    }
+
+    Stream<File> streamByParent(final File parent) {
+        return stream(childrenByParent, parent);
+    }
+
+    Stream<File> streamDirectory(final String name) {
+        return stream(directoriesByName, name);
+    }
+
+    void clear() {
+        files.clear();
+        filesByName.clear();
+        filesByExtension.clear();
+        directoriesByName.clear();
+        childrenByParent.clear();
+    }
+
+    /**
+     * Returns the extension of the specified {@code fileName}, including the
+     * leading dot, or an empty string if the file name has no extension.
+     */
+    static String extensionOf(final String fileName) {
+        final int index = fileName.lastIndexOf('.');
+
+        return index > 0 ? fileName.substring(index) : "";
+    }
+
+    private static <K> void put(final Map<K, Set<File>> index, final K key, final File file) {
+        index.computeIfAbsent(key, ignored -> ConcurrentHashMap.newKeySet()).add(file);
+    }
+
+    // Emptied sets are kept, so a file added concurrently is never put into a set that was dropped.
+    private static <K> void remove(final Map<K, Set<File>> index, final K key, final File file) {
+        final Set<File> found = index.get(key);
+
+        if (found != null)
+            found.remove(file);
+    }
+
+    private static <K> List<File> get(final Map<K, Set<File>> index, final K key) {
+        final Set<File> found = index.get(key);
+
+        return found == null ? Collections.emptyList() : new ArrayList<>(found);
+    }
+
+    /**
+     * Streams the indexed set directly, without copying it. The stream is weakly
+     * consistent and may or may not reflect files added while it is consumed.
+     */
+    private static <K> Stream<File> stream(final Map<K, Set<File>> index, final K key) {
+        final Set<File> found = index.get(key);
+
+        return found == null ? Stream.empty() : found.stream();
+    }
+
+}
@@ -0,0 +1,913 @@
+package system;
+
+import exceptions.FileNotFoundException;
+import exceptions.FileNotSupportedException;
+import exceptions.FileSystemClosedException;
+import meta.FileMetaData;
+import meta.FileMetaDataReader;
+import meta.FileMetaDataWriter;
+import meta.MetaDataQuery;
+import meta.MetaDataQueryIndex;
+import meta.MetaDataStore;
+import store.DeduplicationStore;
+import util.Transfers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static util.Preconditions.*;
+
+/**
+ * Reference {@link FileSystem} implementation backed by a directory on the local disk.
+ *
+ * <p>
+ * All files of this system are stored under a single root directory. Paths passed
+ * to this system are resolved against that root, and paths that would escape it
+ * are treated as invalid. Downloaded files are copied to a separate download
+ * directory on the local machine. File data is copied with {@link Transfers}, which
+ * lets the operating system move the bytes without copying them to user space.
+ * </p>
+ *
+ * <p>
+ * The directory tree is scanned only once, by the {@link #initialize()} method,
+ * into an in-memory index of file names, extensions, parent directories and
+ * directory names. The index is kept up to date by {@link #upload(String, String)},
+ * {@link #delete(String)} and {@link #createDir(String)}, so the {@code find} methods
+ * never walk the tree.
+ * Changes made to the root directory outside of this system are not visible until
+ * the system is initialized again. The {@code stream} methods read the index
+ * directly, without copying the matching files into a list first.
+ * </p>
+ *
+ * <p>
+ * Meta data of uploaded files is stored next to the file, in a file with the same
+ * name and the {@link #META_FILE_EXTENSION} extension. These files are not indexed,
+ * so files and directories with names of meta files can't be uploaded or created.
+ * Systems with many files can keep all meta data in a single {@link MetaDataStore}
+ * in the root directory instead, which saves a file per uploaded file and makes
+ * {@link #getFileMetaData(String)} a lookup in memory followed by a single read.
+ * </p>
+ *
+ * <p>
+ * Meta data of all files is also kept in a {@link MetaDataQueryIndex}, which is
+ * loaded by {@link #initialize()} and updated by
+ * {@link #upload(String, FileMetaData, String)}, so
+ * {@link #findFileByMetaData(MetaDataQuery)} looks up or scans a range of an index
+ * instead of reading every meta file.
+ * </p>
+ *
+ * <p>
+ * Systems that receive the same content many times can deduplicate uploads. Every
+ * uploaded file is then hashed while it's copied into a {@link DeduplicationStore}
+ * in the root directory, which keeps each distinct content once, and the file in
+ * the tree is a hard link to the stored content, or a copy of it if the file system
+ * doesn't support hard links. Stored content is read only, and uploads always
+ * write a temporary file next to the existing one and move it over it, instead of
+ * writing into it, so files that share content never change each other. Ranges
+ * uploaded into a linked file first replace it with a copy of its own.
+ * </p>
+ *
+ * <p>
+ * The instance registered with the {@link FileSystemManager} uses the root and download
+ * directories specified by the {@link #ROOT_PROPERTY} and {@link #DOWNLOAD_PROPERTY}
+ * system properties, keeps meta data in a store if the {@link #CATALOG_PROPERTY}
+ * system property is {@code true} and deduplicates uploads if the
+ * {@link #DEDUPLICATION_PROPERTY} system property is {@code true}.
+ * </p>
+ *
+ * @see FileSystem
+ * @see FileSystemManager
+ */
+public class LocalFileSystem implements FileSystem<File> {
+
+    /**
+     * System property that specifies the root directory of the registered instance.
+     */
+    public static final String ROOT_PROPERTY = "sk.file.system.local.root";
+
+    /**
+     * System property that specifies the download directory of the registered instance.
+     */
+    public static final String DOWNLOAD_PROPERTY = "sk.file.system.local.download";
+
+    /**
+     * Extension of the files that hold meta data of uploaded files.
+     */
+    public static final String META_FILE_EXTENSION = ".meta";
+
+    /**
+     * System property that makes the registered instance keep meta data in a {@link MetaDataStore}.
+     */
+    public static final String CATALOG_PROPERTY = "sk.file.system.local.catalog";
+
+    /**
+     * Name of the {@link MetaDataStore} file in the root directory. Like other meta
+     * files, it isn't indexed, and neither is its index.
+     */
+    public static final String CATALOG_FILE_NAME = ".catalog" + META_FILE_EXTENSION;
+
+    /**
+     * System property that makes the registered instance deduplicate uploaded files.
+     */
+    public static final String DEDUPLICATION_PROPERTY = "sk.file.system.local.deduplication";
+
+    /**
+     * Name of the {@link DeduplicationStore} directory in the root directory, which
+     * isn't indexed.
+     */
+    public static final String BLOBS_DIRECTORY_NAME = ".blobs" + META_FILE_EXTENSION;
+
+    private static final String PARTIAL_FILE_EXTENSION = ".partial";
+
+    static {
+        FileSystemManager.registerSystem(new LocalFileSystem());
+    }
+
+    private final File root;
+
+    private final File downloadDirectory;
+
+    private final Set<String> excludedExtensions = ConcurrentHashMap.newKeySet();
+
+    private final LocalFileIndex index = new LocalFileIndex();
+
+    private final MetaDataQueryIndex<File> metaDataIndex = new MetaDataQueryIndex<>();
+
+    private final boolean catalog;
+
+    private final boolean deduplicate;
+
+    private volatile MetaDataStore metaDataStore;
+
+    private volatile DeduplicationStore deduplicationStore;
+
+    private volatile boolean open;
+
+    /**
+     * Constructs a local file system with the root and download directories
+     * specified by the {@link #ROOT_PROPERTY} and {@link #DOWNLOAD_PROPERTY} system
+     * properties. If a property isn't set a directory in the user home is used.
+     * Meta data is kept in a {@link MetaDataStore} if the {@link #CATALOG_PROPERTY}
+     * system property is {@code true}, and uploads are deduplicated if the
+     * {@link #DEDUPLICATION_PROPERTY} system property is {@code true}.
+     */
+    public LocalFileSystem() {
+        this(System.getProperty(ROOT_PROPERTY, defaultPath("sk-file-system")),
+                System.getProperty(DOWNLOAD_PROPERTY, defaultPath("Downloads")),
+                Boolean.getBoolean(CATALOG_PROPERTY), Boolean.getBoolean(DEDUPLICATION_PROPERTY));
+    }
+
+    /**
+     * Constructs a local file system with the specified root and download directories.
+     * Directories are created when the system is initialized.
+     *
+     * @param rootPath path of the root directory of the file system
+     * @param downloadPath path of the directory that downloaded files are copied to
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     */
+    public LocalFileSystem(final String rootPath, final String downloadPath) {
+        this(rootPath, downloadPath, false);
+    }
+
+    /**
+     * Constructs a local file system with the specified root and download directories
+     * that keeps meta data in a single {@link MetaDataStore} if {@code catalog} is true,
+     * or in a meta file next to every file otherwise.
+     *
+     * @param rootPath path of the root directory of the file system
+     * @param downloadPath path of the directory that downloaded files are copied to
+     * @param catalog whether meta data is kept in a {@link MetaDataStore}
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     */
+    public LocalFileSystem(final String rootPath, final String downloadPath, final boolean catalog) {
+        this(rootPath, downloadPath, catalog, false);
+    }
+
+    /**
+     * Constructs a local file system with the specified root and download directories
+     * that keeps meta data in a single {@link MetaDataStore} if {@code catalog} is true,
+     * and keeps every distinct uploaded content once if {@code deduplicate} is true.
+     *
+     * @param rootPath path of the root directory of the file system
+     * @param downloadPath path of the directory that downloaded files are copied to
+     * @param catalog whether meta data is kept in a {@link MetaDataStore}
+     * @param deduplicate whether uploaded content is kept in a {@link DeduplicationStore}
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     */
+    public LocalFileSystem(final String rootPath, final String downloadPath, final boolean catalog,
+                           final boolean deduplicate) {
+        checkNotNull(rootPath);
+        checkNotNull(downloadPath);
+
+        this.root = normalize(new File(rootPath));
+        this.downloadDirectory = normalize(new File(downloadPath));
+        this.catalog = catalog;
+        this.deduplicate = deduplicate;
+    }
+
+    private static String defaultPath(final String directoryName) {
+        return System.getProperty("user.home") + File.separator + directoryName;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public File getDownloadDirectory() {
+        return downloadDirectory;
+    }
+
+    @Override
+    public void initialize() {
+        createDirectories(root);
+        createDirectories(downloadDirectory);
+
+        index.clear();
+        metaDataIndex.clear();
+
+        final List<Path> metaFiles = indexTree(root);
+
+        if (catalog && metaDataStore == null)
+            metaDataStore = new MetaDataStore.MetaDataStoreBuilder(new File(root, CATALOG_FILE_NAME).toPath())
+                    .build();
+
+        if (deduplicate && deduplicationStore == null)
+            deduplicationStore = new DeduplicationStore.DeduplicationStoreBuilder(
+                    new File(root, BLOBS_DIRECTORY_NAME).toPath()).build();
+
+        indexMetaData(metaFiles);
+
+        open = true;
+    }
+
+    /**
+     * Indexes all files and directories under the specified {@code directory}.
+     *
+     * @return paths of the meta files that were found
+     */
+    private List<Path> indexTree(final File directory) {
+        final List<Path> metaFiles = new ArrayList<>();
+
+        try {
+            Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes) {
+                    if (isMetaDirectory(dir.toFile()))
+                        return FileVisitResult.SKIP_SUBTREE;
+
+                    if (!dir.equals(directory.toPath()))
+                        index.addDirectory(dir.toFile());
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                    if (!attributes.isRegularFile())
+                        return FileVisitResult.CONTINUE;
+
+                    final String name = file.getFileName().toString();
+
+                    if (!isMetaFile(file.toFile()))
+                        index.addFile(file.toFile());
+                    else if (name.endsWith(META_FILE_EXTENSION) && !name.startsWith(CATALOG_FILE_NAME))
+                        metaFiles.add(file);
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+            });
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return metaFiles;
+    }
+
+    /**
+     * Loads the meta data of all indexed files into the {@link MetaDataQueryIndex},
+     * from the store if there is one or from the specified {@code metaFiles} otherwise.
+     * Meta data of files that no longer exist is skipped.
+     */
+    private void indexMetaData(final List<Path> metaFiles) {
+        if (metaDataStore != null) {
+            metaDataStore.scan((key, metaData) -> {
+                final File file = normalize(new File(root, key));
+
+                if (index.contains(file))
+                    metaDataIndex.put(file, metaData);
+            });
+
+            return;
+        }
+
+        // A meta file that can't be read loses its meta data, but doesn't keep the others from being indexed.
+        FileMetaDataReader.readAllReadable(metaFiles).forEach((metaFile, metaData) -> {
+            final String path = metaFile.toString();
+            final File file = new File(path.substring(0, path.length() - META_FILE_EXTENSION.length()));
+
+            if (metaData != null && index.contains(file))
+                metaDataIndex.put(file, metaData);
+        });
+    }
+
+    @Override
+    public void terminate() {
+        checkOpen();
+
+        open = false;
+        index.clear();
+        metaDataIndex.clear();
+
+        if (metaDataStore != null) {
+            metaDataStore.close();
+            metaDataStore = null;
+        }
+
+        deduplicationStore = null;
+    }
+
+    @Override
+    public void excludeFileExtension(final String fileExtension) {
+        checkNotNull(fileExtension);
+        checkOpen();
+
+        checkArgument(excludedExtensions.add(normalizeExtension(fileExtension)),
+                "Specified extension is already excluded!");
+    }
+
+    @Override
+    public void upload(final String filePath, final String destinationPath) {
+        checkNotNull(filePath);
+        checkNotNull(destinationPath);
+        checkOpen();
+
+        uploadWorker(filePath, destinationPath);
+    }
+
+    @Override
+    public void upload(final String filePath, final FileMetaData fileMetaData, final String destinationPath) {
+        checkNotNull(filePath, fileMetaData, destinationPath);
+        checkOpen();
+
+        final File uploaded = uploadWorker(filePath, destinationPath);
+
+        if (metaDataStore != null)
+            metaDataStore.put(keyOf(uploaded), fileMetaData);
+        else
+            FileMetaDataWriter.writeFileMetaData(fileMetaData, metaFileOf(uploaded).getPath());
+
+        metaDataIndex.put(uploaded, fileMetaData);
+    }
+
+    @Override
+    public FileMetaData getFileMetaData(final String path) {
+        checkNotNull(path);
+        checkOpen();
+
+        final File file = resolve(path);
+
+        if (file == null || !file.isFile())
+            throw new FileNotFoundException("File wasn't found!");
+
+        if (metaDataStore != null)
+            return metaDataStore.get(keyOf(file));
+
+        final File metaFile = metaFileOf(file);
+
+        return metaFile.isFile() ? FileMetaDataReader.readFileMetaData(metaFile) : null;
+    }
+
+    @Override
+    public String resolveDestination(final String destinationPath) {
+        checkNotNull(destinationPath);
+        checkOpen();
+
+        return keyOf(resolveDirectory(destinationPath));
+    }
+
+    @Override
+    public String getDownloadPath() {
+        return downloadDirectory.getPath();
+    }
+
+    /**
+     * @return path of the {@code file} relative to the root, which is the key of
+     * its meta data in the {@link MetaDataStore}
+     */
+    private String keyOf(final File file) {
+        return root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    @Override
+    public void uploadCollection(final List<String> filePaths, final String destinationPath) {
+        checkNotNull(filePaths);
+        checkNotNull(destinationPath);
+        checkOpen();
+
+        filePaths.forEach(filePath -> upload(filePath, destinationPath));
+    }
+
+    private File uploadWorker(final String filePath, final String destinationPath) {
+        final File file = new File(filePath);
+
+        checkFile(file, "File to be uploaded wasn't found!");
+        checkArgument(file.isFile(), "Only files can be uploaded!");
+        checkSupported(file);
+
+        final File destination = new File(resolveDirectory(destinationPath), file.getName());
+
+        if (deduplicationStore != null)
+            store(file, destination);
+        else if (!isSameFile(file, destination))
+            replace(destination, temporary -> Transfers.copy(file, temporary.toFile()));
+
+        index.addFile(destination);
+
+        return destination;
+    }
+
+    /**
+     * Stores the content of the {@code file} in the {@link DeduplicationStore} and replaces
+     * the {@code destination} with a link to it.
+     */
+    private void store(final File file, final File destination) {
+        final Path blob;
+
+        try (final InputStream input = Files.newInputStream(file.toPath())) {
+            blob = deduplicationStore.put(keyOf(destination), input).getPath();
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        replace(destination, temporary -> {
+            Files.delete(temporary);
+
+            try {
+                Files.createLink(temporary, blob);
+            } catch (final UnsupportedOperationException | FileSystemException ex) {
+                Transfers.copy(blob.toFile(), temporary.toFile());
+            }
+        });
+    }
+
+    /**
+     * Replaces a {@code file} that shares its content with other files with a copy of
+     * its own, so it can be written into.
+     */
+    private void detach(final File file) {
+        if (!file.isFile() || !isShared(file.toPath()))
+            return;
+
+        replace(file, temporary -> Transfers.copy(file, temporary.toFile()));
+
+        if (deduplicationStore != null)
+            deduplicationStore.remove(keyOf(file));
+    }
+
+    private void checkSupported(final File file) {
+        checkNotReserved(file);
+
+        final String extension = LocalFileIndex.extensionOf(file.getName());
+
+        if (excludedExtensions.contains(extension))
+            throw new FileNotSupportedException(String.format("File extension: %s is excluded", extension));
+    }
+
+    /**
+     * Rejects names of meta files and directories, which would be mistaken for meta
+     * data and left out of the index once the system is initialized again.
+     */
+    private static void checkNotReserved(final File file) {
+        if (isMetaFile(file) || isMetaDirectory(file))
+            throw new FileNotSupportedException(String.format("File name: %s is reserved", file.getName()));
+    }
+
+    @Override
+    public void download(final String path) {
+        download(path, downloadDirectory.getPath());
+    }
+
+    @Override
+    public void download(final String path, final String destinationPath) {
+        checkNotNull(path);
+        checkNotNull(destinationPath);
+        checkOpen();
+
+        final File source = resolve(path);
+
+        if (source == null || !source.exists())
+            throw new FileNotFoundException("File to be downloaded wasn't found!");
+
+        final File destinationDirectory = normalize(new File(destinationPath));
+
+        createDirectories(destinationDirectory);
+
+        if (source.isDirectory())
+            copyTree(source, new File(destinationDirectory, source.getName()));
+        else
+            copy(source, new File(destinationDirectory, source.getName()));
+    }
+
+    @Override
+    public void uploadRange(final String filePath, final long offset, final long length,
+                            final String destinationPath) {
+        checkNotNull(filePath);
+        checkNotNull(destinationPath);
+        checkArgument(offset >= 0 && length >= 0, "Offset and length can't be negative!");
+        checkOpen();
+
+        final File file = new File(filePath);
+
+        checkFile(file, "File to be uploaded wasn't found!");
+        checkArgument(file.isFile(), "Only files can be uploaded!");
+        checkSupported(file);
+
+        final File destination = new File(resolveDirectory(destinationPath), file.getName());
+
+        // The first range replaces the file, the others are written into it once it's a file of its own.
+        if (offset == 0) {
+            replace(destination, temporary -> copyRange(file, offset, length, temporary));
+
+            if (deduplicationStore != null)
+                deduplicationStore.remove(keyOf(destination));
+        } else {
+            detach(destination);
+
+            try {
+                copyRange(file, offset, length, destination.toPath());
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        index.addFile(destination);
+    }
+
+    private static void copyRange(final File file, final long offset, final long length,
+                                  final Path destination) throws IOException {
+        try (final FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             final FileChannel output = FileChannel.open(destination, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE)) {
+            output.position(offset);
+
+            Transfers.copy(input, offset, length, output);
+        }
+    }
+
+    @Override
+    public long download(final String path, final long offset, final long length, final OutputStream output) {
+        checkNotNull(path);
+        checkNotNull(output);
+        checkArgument(offset >= 0 && length >= 0, "Offset and length can't be negative!");
+        checkOpen();
+
+        final File source = resolve(path);
+
+        if (source == null || !source.isFile())
+            throw new FileNotFoundException("File to be downloaded wasn't found!");
+
+        final WritableByteChannel destination = output instanceof FileOutputStream
+                ? ((FileOutputStream) output).getChannel()
+                : Channels.newChannel(output);
+
+        try (final FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            return Transfers.copy(input, offset, length, destination);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public long size(final String path) {
+        checkNotNull(path);
+        checkOpen();
+
+        final File file = resolve(path);
+
+        if (file == null || !file.isFile())
+            throw new FileNotFoundException("File wasn't found!");
+
+        return file.length();
+    }
+
+    @Override
+    public void downloadMultiple(final List<String> paths) {
+        checkNotNull(paths);
+        checkOpen();
+
+        paths.forEach(this::download);
+    }
+
+    @Override
+    public void delete(final String path) {
+        checkNotNull(path);
+        checkOpen();
+
+        final File file = resolve(path);
+
+        // Only indexed files can be deleted, which keeps meta files and stored content out of reach.
+        if (file == null || !file.isFile() || !index.contains(file))
+            throw new FileNotFoundException("File to be deleted wasn't found!");
+
+        index.removeFile(file);
+        metaDataIndex.remove(file);
+
+        try {
+            Files.delete(file.toPath());
+
+            if (metaDataStore != null)
+                metaDataStore.remove(keyOf(file));
+            else
+                Files.deleteIfExists(metaFileOf(file).toPath());
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        if (deduplicationStore != null)
+            deduplicationStore.remove(keyOf(file));
+    }
+
+    @Override
+    public void createDir(final String dirPath) {
+        checkNotNull(dirPath);
+        checkOpen();
+
+        final Path name = Paths.get(dirPath).getFileName();
+
+        checkArgument(name != null, "Directory name is missing!");
+        checkNotReserved(name.toFile());
+
+        File directory = resolve(dirPath);
+
+        // Invalid paths create the directory in the root of the file system.
+        if (directory == null || directory.equals(root) || !directory.getParentFile().isDirectory())
+            directory = new File(root, name.toString());
+
+        createDirectories(directory);
+
+        index.addDirectory(directory);
+    }
+
+    @Override
+    public List<File> findAll() {
+        checkOpen();
+
+        return index.findAll();
+    }
+
+    @Override
+    public List<File> findFileByName(final String name) {
+        checkNotNull(name);
+        checkOpen();
+
+        return index.findByName(name);
+    }
+
+    @Override
+    public List<File> findFileByExtension(final String extension) {
+        checkNotNull(extension);
+        checkOpen();
+
+        return index.findByExtension(normalizeExtension(extension));
+    }
+
+    @Override
+    public List<File> findFileByParent(final File parent) {
+        checkNotNull(parent);
+        checkOpen();
+
+        return index.findByParent(normalize(parent));
+    }
+
+    @Override
+    public List<File> findDirectory(final String name) {
+        checkNotNull(name);
+        checkOpen();
+
+        return index.findDirectory(name);
+    }
+
+    @Override
+    public List<File> findFileByMetaData(final MetaDataQuery query) {
+        checkNotNull(query);
+        checkOpen();
+
+        return metaDataIndex.find(query);
+    }
+
+    @Override
+    public Stream<File> streamAll() {
+        checkOpen();
+
+        return index.streamAll();
+    }
+
+    @Override
+    public Stream<File> streamFileByName(final String name) {
+        checkNotNull(name);
+        checkOpen();
+
+        return index.streamByName(name);
+    }
+
+    @Override
+    public Stream<File> streamFileByExtension(final String extension) {
+        checkNotNull(extension);
+        checkOpen();
+
+        return index.streamByExtension(normalizeExtension(extension));
+    }
+
+    @Override
+    public Stream<File> streamFileByParent(final File parent) {
+        checkNotNull(parent);
+        checkOpen();
+
+        return index.streamByParent(normalize(parent));
+    }
+
+    @Override
+    public Stream<File> streamDirectory(final String name) {
+        checkNotNull(name);
+        checkOpen();
+
+        return index.streamDirectory(name);
+    }
+
+    private void checkOpen() {
+        if (!open)
+            throw new FileSystemClosedException("File system is not open!");
+    }
+
+    /**
+     * Resolves the specified {@code path} against the root of this system.
+     * Absolute paths inside of the root are used as they are.
+     *
+     * @return resolved file or null if the path points outside of the root
+     */
+    private File resolve(final String path) {
+        final Path rootPath = root.toPath();
+
+        Path resolved = Paths.get(path);
+
+        if (!resolved.isAbsolute() || !resolved.normalize().startsWith(rootPath))
+            resolved = rootPath.resolve(path.replaceFirst("^[/\\\\]+", ""));
+
+        resolved = resolved.normalize();
+
+        return resolved.startsWith(rootPath) ? resolved.toFile() : null;
+    }
+
+    private File resolveDirectory(final String path) {
+        final File directory = resolve(path);
+
+        return directory != null && directory.isDirectory() ? directory : root;
+    }
+
+    private static File normalize(final File file) {
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+
+    private static String normalizeExtension(final String extension) {
+        return extension.isEmpty() || extension.startsWith(".") ? extension : "." + extension;
+    }
+
+    private static boolean isMetaDirectory(final File directory) {
+        return directory.getName().equals(BLOBS_DIRECTORY_NAME);
+    }
+
+    private static boolean isMetaFile(final File file) {
+        // Files of the catalog include its index and temporary files, and partial files are still being uploaded.
+        return file.getName().endsWith(META_FILE_EXTENSION) || file.getName().startsWith(CATALOG_FILE_NAME)
+                || file.getName().endsWith(PARTIAL_FILE_EXTENSION);
+    }
+
+    private static File metaFileOf(final File file) {
+        return new File(file.getPath() + META_FILE_EXTENSION);
+    }
+
+    private static void createDirectories(final File directory) {
+        try {
+            Files.createDirectories(directory.toPath());
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes the {@code destination} into a temporary file next to it, which then atomically
+     * replaces it. The existing file is never written into and stays intact if the write
+     * fails, even if it's the file being uploaded.
+     */
+    private static void replace(final File destination, final ContentWriter writer) {
+        try {
+            final Path temporary = Files.createTempFile(destination.getParentFile().toPath(),
+                    "." + destination.getName(), PARTIAL_FILE_EXTENSION);
+
+            try {
+                writer.write(temporary);
+
+                Files.move(temporary, destination.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static boolean isSameFile(final File file, final File other) {
+        try {
+            return other.exists() && Files.isSameFile(file.toPath(), other.toPath());
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static boolean isShared(final Path file) {
+        try {
+            return ((Number) Files.getAttribute(file, "unix:nlink")).intValue() > 1;
+        } catch (final UnsupportedOperationException | IllegalArgumentException ex) {
+            // Without link counts, read only files are the ones linked to stored content.
+            return !Files.isWritable(file);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void copy(final File source, final File destination) {
+        try {
+            Transfers.copy(source, destination);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContentWriter {
+
+        void write(Path destination) throws IOException;
+
+    }
+
+    private static void copyTree(final File source, final File destination) {
+        try {
+            Files.walkFileTree(source.toPath(), new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes)
+                        throws IOException {
+                    if (isMetaDirectory(dir.toFile()))
+                        return FileVisitResult.SKIP_SUBTREE;
+
+                    Files.createDirectories(target(dir));
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                    if (!isMetaFile(file.toFile()))
+                        copy(file.toFile(), target(file).toFile());
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private Path target(final Path path) {
+                    return destination.toPath().resolve(source.toPath().relativize(path));
+                }
+
+            });
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,523 @@
+package system;
+
+import exceptions.FileNotFoundException;
+import util.Transfers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static util.Preconditions.*;
+
+/**
+ * Uploads and downloads large files in chunks that survive interruptions.
+ *
+ * <p>
+ * A file is transferred as a sequence of chunks of {@link #getChunkSize()} bytes
+ * with the range operations of the {@link FileSystem}. After every chunk a
+ * checkpoint that records the completed chunks is written to the checkpoint
+ * directory, so when a transfer fails, or the process dies, transferring the same
+ * file again continues after the last completed chunk instead of starting from
+ * the beginning. A chunk that fails is retried {@link #getRetries()} times before
+ * the transfer gives up. The checkpoint is deleted once the transfer completes.
+ * </p>
+ *
+ * <p>
+ * An upload starts over if the local file changed since its checkpoint was written,
+ * or if the uploaded file is shorter than the completed chunks. A download starts
+ * over if the size of the file changed. Both start over as well if the file on the
+ * file system no longer starts with the first chunk that was transferred, which is
+ * recorded in the checkpoint by its checksum, so a file that another writer
+ * replaced isn't completed with chunks of a different file, unless the files start
+ * with the same chunk. Downloaded chunks are written to a file
+ * with the {@link #PART_EXTENSION} extension, which is renamed once all chunks are
+ * downloaded, while uploaded chunks are written to the destination file directly.
+ * For example
+ *
+ * <pre>{@code
+ * ResumableTransfer transfer = new ResumableTransfer.ResumableTransferBuilder(fileSystem)
+ *         .chunkSize(16 * 1024 * 1024)
+ *         .build();
+ *
+ * transfer.upload("backup.tar", "backups");
+ * transfer.download("backups/backup.tar", "restore");
+ * }</pre>
+ * </p>
+ *
+ * @see FileSystem#uploadRange(String, long, long, String)
+ * @see FileSystem#download(String, long, long, java.io.OutputStream)
+ */
+public class ResumableTransfer {
+
+    /**
+     * Default size of the transferred chunks.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Default number of times a failed chunk is retried.
+     */
+    public static final int DEFAULT_RETRIES = 3;
+
+    /**
+     * Extension of files that are being downloaded.
+     */
+    public static final String PART_EXTENSION = ".part";
+
+    private static final String CHECKPOINT_EXTENSION = ".transfer";
+
+    private static final int MAGIC = 0x534B5254;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final byte UPLOAD = 1;
+
+    private static final byte DOWNLOAD = 2;
+
+    private final FileSystem<?> fileSystem;
+
+    private final int chunkSize;
+
+    private final int retries;
+
+    private final Path checkpointDirectory;
+
+    private ResumableTransfer(final ResumableTransferBuilder builder) {
+        this.fileSystem          = builder.fileSystem;
+        this.chunkSize           = builder.chunkSize;
+        this.retries             = builder.retries;
+        this.checkpointDirectory = builder.checkpointDirectory;
+    }
+
+    public FileSystem<?> getFileSystem() {
+        return fileSystem;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public Path getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+
+    /**
+     * Uploads the file on the local machine to the {@code destinationPath} directory,
+     * continuing a previous upload of the same file to the same directory.
+     *
+     * @param filePath path of the file on the local machine
+     * @param destinationPath directory on the file system that the file is uploaded to
+     *
+     * @return number of bytes uploaded by this call, which is less than the size of
+     * the file if a previous upload was continued
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception FileNotFoundException if the file to be uploaded wasn't found
+     * @exception UncheckedIOException if a chunk failed more times than allowed, in
+     * which case calling this method again continues the upload
+     */
+    public long upload(final String filePath, final String destinationPath) {
+        checkNotNull(filePath);
+        checkNotNull(destinationPath);
+
+        final File file = new File(filePath).getAbsoluteFile();
+
+        if (!file.isFile())
+            throw new FileNotFoundException("File to be uploaded wasn't found!");
+
+        final String directory = fileSystem.resolveDestination(destinationPath);
+        final String remotePath = directory.isEmpty() ? file.getName() : directory + "/" + file.getName();
+        final Path checkpointPath = checkpointOf(UPLOAD, file.getPath(), remotePath);
+
+        Checkpoint checkpoint = readCheckpoint(checkpointPath);
+
+        if (checkpoint == null || !checkpoint.matches(UPLOAD, file.length(), file.lastModified(), chunkSize)
+                || remoteSize(remotePath) < checkpoint.completedBytes()
+                || !startsWithFirstChunk(remotePath, checkpoint))
+            checkpoint = new Checkpoint(UPLOAD, file.length(), file.lastModified(), chunkSize);
+
+        long transferred = 0;
+
+        for (int chunk = checkpoint.completed.nextClearBit(0); chunk < checkpoint.chunkCount();
+             chunk = checkpoint.completed.nextClearBit(chunk + 1)) {
+            final long offset = (long) chunk * chunkSize;
+            final long length = checkpoint.lengthOf(chunk);
+
+            retry(() -> fileSystem.uploadRange(file.getPath(), offset, length, destinationPath));
+
+            if (chunk == 0)
+                checkpoint.firstChunkChecksum = checksum(file.toPath(), length);
+
+            transferred += length;
+            checkpoint.completed.set(chunk);
+            writeCheckpoint(checkpointPath, checkpoint);
+        }
+
+        deleteCheckpoint(checkpointPath);
+
+        return transferred;
+    }
+
+    private long remoteSize(final String path) {
+        try {
+            return fileSystem.size(path);
+        } catch (final FileNotFoundException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Downloads the file on the {@code path} to the {@code destinationPath} directory
+     * on the local machine, continuing a previous download of the same file to the
+     * same directory.
+     *
+     * @param path of the file to be downloaded
+     * @param destinationPath directory on the local machine that the file is copied to
+     *
+     * @return number of bytes downloaded by this call, which is less than the size of
+     * the file if a previous download was continued
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception FileNotFoundException if the file to be downloaded wasn't found
+     * @exception UncheckedIOException if a chunk failed more times than allowed, in
+     * which case calling this method again continues the download
+     */
+    public long download(final String path, final String destinationPath) {
+        checkNotNull(path);
+        checkNotNull(destinationPath);
+
+        final Path name = Paths.get(path).getFileName();
+
+        checkArgument(name != null, "File name is missing!");
+
+        final long size = fileSystem.size(path);
+
+        try {
+            final Path directory = Files.createDirectories(Paths.get(destinationPath).toAbsolutePath());
+            final Path destination = directory.resolve(name.toString());
+            final Path part = directory.resolve(name + PART_EXTENSION);
+            final Path checkpointPath = checkpointOf(DOWNLOAD, path, destination.toString());
+
+            Checkpoint checkpoint = readCheckpoint(checkpointPath);
+
+            if (checkpoint == null || !checkpoint.matches(DOWNLOAD, size, 0, chunkSize) || !Files.exists(part)
+                    || !startsWithFirstChunk(path, checkpoint))
+                checkpoint = new Checkpoint(DOWNLOAD, size, 0, chunkSize);
+
+            long transferred = 0;
+
+            try (final FileChannel output = FileChannel.open(part, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                for (int chunk = checkpoint.completed.nextClearBit(0); chunk < checkpoint.chunkCount();
+                     chunk = checkpoint.completed.nextClearBit(chunk + 1)) {
+                    final long offset = (long) chunk * chunkSize;
+                    final long length = checkpoint.lengthOf(chunk);
+
+                    retry(() -> downloadChunk(path, offset, length, output));
+
+                    // Chunk has to be on the disk before the checkpoint says it's complete.
+                    output.force(false);
+
+                    if (chunk == 0)
+                        checkpoint.firstChunkChecksum = checksum(part, length);
+
+                    transferred += length;
+                    checkpoint.completed.set(chunk);
+                    writeCheckpoint(checkpointPath, checkpoint);
+                }
+
+                output.truncate(size);
+            }
+
+            Files.move(part, destination, StandardCopyOption.REPLACE_EXISTING);
+            deleteCheckpoint(checkpointPath);
+
+            return transferred;
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void downloadChunk(final String path, final long offset, final long length, final FileChannel output) {
+        try {
+            output.position(offset);
+
+            final long written = fileSystem.download(path, offset, length, Channels.newOutputStream(output));
+
+            if (written != length)
+                throw new IOException("File was changed during the download!");
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Checks that the file on the {@code path} still starts with the first chunk that
+     * was transferred under the {@code checkpoint}, if it was transferred, so the
+     * transfer isn't continued on a file that was replaced in the meantime.
+     */
+    private boolean startsWithFirstChunk(final String path, final Checkpoint checkpoint) {
+        if (!checkpoint.completed.get(0))
+            return true;
+
+        final ChecksumOutputStream output = new ChecksumOutputStream();
+
+        try {
+            retry(() -> {
+                output.reset();
+
+                fileSystem.download(path, 0, checkpoint.lengthOf(0), output);
+            });
+        } catch (final FileNotFoundException ex) {
+            return false;
+        }
+
+        return output.getValue() == checkpoint.firstChunkChecksum;
+    }
+
+    /**
+     * @return checksum of the first {@code length} bytes of the file on the local machine
+     */
+    private static long checksum(final Path file, final long length) {
+        final ChecksumOutputStream output = new ChecksumOutputStream();
+
+        try (final FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+            Transfers.copy(input, 0, length, Channels.newChannel(output));
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return output.getValue();
+    }
+
+    /**
+     * Runs the {@code transfer} until it succeeds or fails more times than allowed.
+     * Only I/O errors are retried.
+     */
+    private void retry(final Runnable transfer) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                transfer.run();
+
+                return;
+            } catch (final UncheckedIOException ex) {
+                if (attempt >= retries)
+                    throw ex;
+            }
+        }
+    }
+
+    private Path checkpointOf(final byte direction, final String source, final String destination) {
+        final String key = direction + "\n" + source + "\n" + destination;
+        final UUID id = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+
+        return checkpointDirectory.resolve(id + CHECKPOINT_EXTENSION);
+    }
+
+    private static Checkpoint readCheckpoint(final Path path) {
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readUnsignedByte() != FORMAT_VERSION)
+                return null;
+
+            final Checkpoint checkpoint = new Checkpoint(input.readByte(), input.readLong(), input.readLong(),
+                    input.readInt());
+
+            checkpoint.firstChunkChecksum = input.readLong();
+
+            final byte[] completed = new byte[input.readInt()];
+
+            input.readFully(completed);
+            checkpoint.completed.or(BitSet.valueOf(completed));
+
+            return checkpoint;
+        } catch (final IOException ex) {
+            // Missing or damaged checkpoint only means that the transfer starts over.
+            return null;
+        }
+    }
+
+    private void writeCheckpoint(final Path path, final Checkpoint checkpoint) {
+        try {
+            Files.createDirectories(checkpointDirectory);
+
+            final Path temporary = Files.createTempFile(checkpointDirectory, path.getFileName().toString(), ".tmp");
+
+            try {
+                try (final DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    final byte[] completed = checkpoint.completed.toByteArray();
+
+                    output.writeInt(MAGIC);
+                    output.writeByte(FORMAT_VERSION);
+                    output.writeByte(checkpoint.direction);
+                    output.writeLong(checkpoint.size);
+                    output.writeLong(checkpoint.modified);
+                    output.writeInt(checkpoint.chunkSize);
+                    output.writeLong(checkpoint.firstChunkChecksum);
+                    output.writeInt(completed.length);
+                    output.write(completed);
+                }
+
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void deleteCheckpoint(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Completed chunks of a transfer, with the size and modification time of the
+     * transferred file that they belong to and the checksum of its first chunk.
+     */
+    private static final class Checkpoint {
+
+        private final byte direction;
+
+        private final long size;
+
+        private final long modified;
+
+        private final int chunkSize;
+
+        private final BitSet completed = new BitSet();
+
+        private long firstChunkChecksum;
+
+        private Checkpoint(final byte direction, final long size, final long modified, final int chunkSize) {
+            this.direction = direction;
+            this.size      = size;
+            this.modified  = modified;
+            this.chunkSize = chunkSize;
+        }
+
+        private boolean matches(final byte direction, final long size, final long modified, final int chunkSize) {
+            return this.direction == direction && this.size == size && this.modified == modified
+                    && this.chunkSize == chunkSize;
+        }
+
+        /**
+         * Empty files are transferred as a single empty chunk, so they are created.
+         */
+        private int chunkCount() {
+            return size == 0 ? 1 : (int) ((size + chunkSize - 1) / chunkSize);
+        }
+
+        private long lengthOf(final int chunk) {
+            return Math.min(chunkSize, size - (long) chunk * chunkSize);
+        }
+
+        private long completedBytes() {
+            final int lastCompleted = completed.previousSetBit(chunkCount() - 1);
+
+            return lastCompleted < 0 ? 0 : (long) lastCompleted * chunkSize + lengthOf(lastCompleted);
+        }
+
+    }
+
+    /**
+     * Computes the checksum of everything written to it.
+     */
+    private static final class ChecksumOutputStream extends OutputStream {
+
+        private final CRC32 checksum = new CRC32();
+
+        @Override
+        public void write(final int b) {
+            checksum.update(b);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int off, final int len) {
+            checksum.update(bytes, off, len);
+        }
+
+        private long getValue() {
+            return checksum.getValue();
+        }
+
+        private void reset() {
+            checksum.reset();
+        }
+
+    }
+
+    public static class ResumableTransferBuilder {
+
+        private final FileSystem<?> fileSystem;
+
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+        private int retries = DEFAULT_RETRIES;
+
+        private Path checkpointDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "sk-file-system-transfers");
+
+        public ResumableTransferBuilder(final FileSystem<?> fileSystem) {
+            this.fileSystem = checkNotNull(fileSystem);
+        }
+
+        /**
+         * Sets the size of transferred chunks. Transfers continued with a different
+         * chunk size start over.
+         */
+        public ResumableTransferBuilder chunkSize(final int chunkSize) {
+            checkArgument(chunkSize > 0, "Chunk size must be positive!");
+
+            this.chunkSize = chunkSize;
+
+            return this;
+        }
+
+        public ResumableTransferBuilder retries(final int retries) {
+            checkArgument(retries >= 0, "Number of retries can't be negative!");
+
+            this.retries = retries;
+
+            return this;
+        }
+
+        /**
+         * Sets the directory on the local machine that checkpoints are written to.
+         */
+        public ResumableTransferBuilder checkpointDirectory(final Path checkpointDirectory) {
+            this.checkpointDirectory = checkNotNull(checkpointDirectory).toAbsolutePath();
+
+            return this;
+        }
+
+        public ResumableTransfer build() {
+            return new ResumableTransfer(this);
+        }
+
+    }
+
+}
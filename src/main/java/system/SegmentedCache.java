@@ -0,0 +1,446 @@
+package system;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Size aware segmented LRU cache of file contents, bounded by the total number of
+ * cached bytes, with an optional tier on the disk.
+ *
+ * <p>
+ * New entries enter the probation segment and are moved to the protected segment
+ * when they are requested again. Protected entries that don't fit into their share
+ * of the budget are moved back to probation, and entries are evicted only from
+ * probation, least recently used first. Files that are downloaded once can't push
+ * out the files that are downloaded often, no matter how many of them there are.
+ * Entries evicted from memory are moved to the disk tier if there is one, which
+ * is an LRU cache with its own budget, and are moved back to memory when they are
+ * requested again.
+ * </p>
+ *
+ * <p>
+ * Every invalidation starts a new generation, and content loaded during an older
+ * generation isn't cached, so a download that races with an upload of the same
+ * file can't cache stale content. The segments are guarded by the lock of the cache,
+ * while files of the disk tier are written, read and deleted without holding it, so
+ * a slow disk never blocks requests that are served from memory.
+ * </p>
+ *
+ * @see CachingFileSystem
+ */
+final class SegmentedCache {
+
+    private static final String ENTRY_EXTENSION = ".cache";
+
+    private final long capacity;
+
+    private final long protectedCapacity;
+
+    private final long maxEntrySize;
+
+    private final Path diskDirectory;
+
+    private final long diskCapacity;
+
+    private final LinkedHashMap<String, byte[]> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, byte[]> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder diskHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private long probationSize;
+
+    private long protectedSize;
+
+    private long diskSize;
+
+    private long generation;
+
+    SegmentedCache(final long capacity, final double protectedRatio, final long maxEntrySize,
+                   final Path diskDirectory, final long diskCapacity) {
+        this.capacity = capacity;
+        this.protectedCapacity = (long) (capacity * protectedRatio);
+        this.maxEntrySize = maxEntrySize;
+        this.diskDirectory = diskDirectory;
+        this.diskCapacity = diskCapacity;
+
+        if (diskDirectory != null)
+            clearDirectory();
+    }
+
+    long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the cached content of the specified {@code key}, moving it to the
+     * protected segment, or to memory if it was found on the disk.
+     *
+     * @return cached content, or null if the key isn't cached
+     */
+    byte[] get(final String key) {
+        final DiskWork work = new DiskWork();
+
+        try {
+            final DiskEntry entry;
+            final long loadGeneration;
+
+            synchronized (this) {
+                byte[] content = protectedSegment.get(key);
+
+                if (content != null) {
+                    hits.increment();
+
+                    return content;
+                }
+
+                content = probation.remove(key);
+
+                if (content != null) {
+                    probationSize -= content.length;
+                    addProtected(key, content, work);
+                    hits.increment();
+
+                    return content;
+                }
+
+                entry = disk.remove(key);
+
+                if (entry == null) {
+                    misses.increment();
+
+                    return null;
+                }
+
+                diskSize -= entry.size;
+                loadGeneration = generation;
+            }
+
+            final byte[] content = readAndDelete(entry);
+
+            if (content == null) {
+                misses.increment();
+
+                return null;
+            }
+
+            synchronized (this) {
+                // Content read during an older generation is returned, but not cached again.
+                if (loadGeneration == generation && !isCached(key))
+                    addProbation(key, content, work);
+            }
+
+            diskHits.increment();
+
+            return content;
+        } finally {
+            apply(work);
+        }
+    }
+
+    /**
+     * @return current generation, which has to be passed to {@link #put(String, byte[], long)}
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the {@code content} of the specified {@code key}, unless it's too large
+     * or the cache was invalidated since the specified {@code generation}.
+     */
+    void put(final String key, final byte[] content, final long generation) {
+        final DiskWork work = new DiskWork();
+
+        synchronized (this) {
+            if (content.length > maxEntrySize || generation != this.generation)
+                return;
+
+            remove(key, work);
+            addProbation(key, content, work);
+        }
+
+        apply(work);
+    }
+
+    /**
+     * Removes all entries whose key ends with the specified file {@code name}. Files
+     * can be reached by more than one path, so all of them are removed.
+     */
+    void invalidate(final String name) {
+        final DiskWork work = new DiskWork();
+
+        synchronized (this) {
+            generation++;
+
+            removeIf(probation, name, content -> probationSize -= content.length);
+            removeIf(protectedSegment, name, content -> protectedSize -= content.length);
+            removeIf(disk, name, entry -> {
+                diskSize -= entry.size;
+                work.deletions.add(entry.file);
+            });
+        }
+
+        apply(work);
+    }
+
+    void clear() {
+        final DiskWork work = new DiskWork();
+
+        synchronized (this) {
+            generation++;
+
+            probation.clear();
+            protectedSegment.clear();
+            disk.values().forEach(entry -> work.deletions.add(entry.file));
+            disk.clear();
+
+            probationSize = 0;
+            protectedSize = 0;
+            diskSize = 0;
+        }
+
+        apply(work);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    synchronized long getSize() {
+        return probationSize + protectedSize;
+    }
+
+    synchronized long getDiskSize() {
+        return diskSize;
+    }
+
+    private boolean isCached(final String key) {
+        return probation.containsKey(key) || protectedSegment.containsKey(key) || disk.containsKey(key);
+    }
+
+    private void remove(final String key, final DiskWork work) {
+        final byte[] probationContent = probation.remove(key);
+
+        if (probationContent != null)
+            probationSize -= probationContent.length;
+
+        final byte[] protectedContent = protectedSegment.remove(key);
+
+        if (protectedContent != null)
+            protectedSize -= protectedContent.length;
+
+        final DiskEntry entry = disk.remove(key);
+
+        if (entry != null) {
+            diskSize -= entry.size;
+            work.deletions.add(entry.file);
+        }
+    }
+
+    private void addProtected(final String key, final byte[] content, final DiskWork work) {
+        protectedSegment.put(key, content);
+        protectedSize += content.length;
+
+        final Iterator<Map.Entry<String, byte[]>> eldest = protectedSegment.entrySet().iterator();
+
+        while (protectedSize > protectedCapacity && eldest.hasNext()) {
+            final Map.Entry<String, byte[]> demoted = eldest.next();
+
+            eldest.remove();
+            protectedSize -= demoted.getValue().length;
+
+            addProbation(demoted.getKey(), demoted.getValue(), work);
+        }
+    }
+
+    private void addProbation(final String key, final byte[] content, final DiskWork work) {
+        probation.put(key, content);
+        probationSize += content.length;
+
+        final Iterator<Map.Entry<String, byte[]>> eldest = probation.entrySet().iterator();
+
+        while (probationSize + protectedSize > capacity && eldest.hasNext()) {
+            final Map.Entry<String, byte[]> evicted = eldest.next();
+
+            eldest.remove();
+            probationSize -= evicted.getValue().length;
+
+            if (diskDirectory == null)
+                evictions.increment();
+            else
+                work.spills.add(new Spill(evicted.getKey(), evicted.getValue(), generation));
+        }
+    }
+
+    /**
+     * Performs the disk work collected while the lock was held, without holding it.
+     * Spilled entries are written first and added to the disk tier afterwards, unless
+     * the cache was invalidated or the key was cached again in the meantime.
+     */
+    private void apply(final DiskWork work) {
+        work.deletions.forEach(SegmentedCache::delete);
+
+        for (final Spill spill : work.spills) {
+            final Path file = diskDirectory.resolve(UUID.randomUUID() + ENTRY_EXTENSION);
+
+            try {
+                Files.write(file, spill.content);
+            } catch (final IOException ex) {
+                // Disk tier is only an optimization, so entries that can't be written are evicted.
+                delete(file);
+                evictions.increment();
+
+                continue;
+            }
+
+            final List<Path> evicted = new ArrayList<>();
+
+            synchronized (this) {
+                if (spill.generation != generation || isCached(spill.key)) {
+                    evicted.add(file);
+                } else {
+                    disk.put(spill.key, new DiskEntry(file, spill.content.length));
+                    diskSize += spill.content.length;
+
+                    final Iterator<DiskEntry> eldest = disk.values().iterator();
+
+                    while (diskSize > diskCapacity && eldest.hasNext()) {
+                        final DiskEntry entry = eldest.next();
+
+                        eldest.remove();
+                        diskSize -= entry.size;
+                        evicted.add(entry.file);
+                        evictions.increment();
+                    }
+                }
+            }
+
+            evicted.forEach(SegmentedCache::delete);
+        }
+    }
+
+    private static byte[] readAndDelete(final DiskEntry entry) {
+        try {
+            return Files.readAllBytes(entry.file);
+        } catch (final IOException ex) {
+            return null;
+        } finally {
+            delete(entry.file);
+        }
+    }
+
+    private static <V> void removeIf(final Map<String, V> segment, final String name,
+                                     final Consumer<V> removed) {
+        final Iterator<Map.Entry<String, V>> entries = segment.entrySet().iterator();
+
+        while (entries.hasNext()) {
+            final Map.Entry<String, V> entry = entries.next();
+            final Path fileName = Paths.get(entry.getKey()).getFileName();
+
+            if (fileName != null && fileName.toString().equals(name)) {
+                entries.remove();
+                removed.accept(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Deletes entries left behind by a previous cache in the disk directory.
+     */
+    private void clearDirectory() {
+        try {
+            Files.createDirectories(diskDirectory);
+
+            try (final DirectoryStream<Path> entries = Files.newDirectoryStream(diskDirectory, "*" + ENTRY_EXTENSION)) {
+                entries.forEach(SegmentedCache::delete);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException ex) {
+            // File is never used again, so failing to delete it only wastes space.
+        }
+    }
+
+    /**
+     * Disk work of a single call, collected while the lock is held.
+     */
+    private static final class DiskWork {
+
+        private final List<Spill> spills = new ArrayList<>();
+
+        private final List<Path> deletions = new ArrayList<>();
+
+    }
+
+    /**
+     * Entry evicted from memory that is on its way to the disk tier.
+     */
+    private static final class Spill {
+
+        private final String key;
+
+        private final byte[] content;
+
+        private final long generation;
+
+        private Spill(final String key, final byte[] content, final long generation) {
+            this.key = key;
+            this.content = content;
+            this.generation = generation;
+        }
+
+    }
+
+    private static final class DiskEntry {
+
+        private final Path file;
+
+        private final long size;
+
+        private DiskEntry(final Path file, final long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+    }
+
+}
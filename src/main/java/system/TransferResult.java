@@ -0,0 +1,56 @@
+package system;
+
+import static util.Preconditions.checkNotNull;
+
+/**
+ * Outcome of transferring a single file as a part of a {@link BatchTransfer}.
+ *
+ * <p>
+ * A failed transfer holds the exception that caused it. Failure of one file
+ * doesn't affect the transfer of other files in the same batch.
+ * </p>
+ *
+ * @see BatchTransfer
+ */
+public class TransferResult {
+
+    private final String path;
+
+    private final Throwable failure;
+
+    private TransferResult(final String path, final Throwable failure) {
+        this.path = checkNotNull(path);
+        this.failure = failure;
+    }
+
+    static TransferResult success(final String path) {
+        return new TransferResult(path, null);
+    }
+
+    static TransferResult failure(final String path, final Throwable failure) {
+        return new TransferResult(path, checkNotNull(failure));
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return exception that caused the transfer to fail or null if the
+     * transfer was successful
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferResult:[" + String.format("path=%s", path) +
+                (failure == null ? "" : String.format(", failure=%s", failure)) + "]";
+    }
+
+}
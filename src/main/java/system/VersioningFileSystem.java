@@ -0,0 +1,360 @@
+package system;
+
+import meta.FileMetaData;
+import meta.MetaDataQuery;
+import store.VersionedFileStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static util.Preconditions.*;
+
+/**
+ * {@link FileSystem} decorator that keeps every uploaded version of a file.
+ *
+ * <p>
+ * Once a file is uploaded to the wrapped file system, its content is stored as the
+ * next version of its path in a {@link VersionedFileStore}, which shares content
+ * that versions have in common, so uploads that fail don't leave versions behind.
+ * The number of the version is recorded in the {@link FileMetaData#getVersion()}
+ * of the uploaded file, so files are always uploaded with meta data. The path of
+ * a file is the directory the wrapped file system
+ * {@linkplain FileSystem#resolveDestination(String) resolves} its destination path
+ * to, followed by its name, the same path it's downloaded by.
+ * </p>
+ *
+ * <p>
+ * The wrapped file system holds the latest version of every file and all other
+ * operations are passed to it, while any version can be restored with
+ * {@link #download(String, long, String)}. For example
+ *
+ * <pre>{@code
+ * VersioningFileSystem<File> fileSystem = new VersioningFileSystem.VersioningFileSystemBuilder<>(
+ *         new LocalFileSystem(), new VersionedFileStore.VersionedFileStoreBuilder(Paths.get("versions")).build())
+ *         .build();
+ *
+ * fileSystem.upload("report.pdf", "documents");
+ * fileSystem.upload("report.pdf", "documents");
+ *
+ * fileSystem.download("documents/report.pdf", 1, "drafts");
+ * }</pre>
+ * </p>
+ *
+ * @see FileSystem
+ * @see VersionedFileStore
+ */
+public class VersioningFileSystem<T> implements FileSystem<T> {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final FileSystem<T> fileSystem;
+
+    private final VersionedFileStore store;
+
+    // Uploads of the same path are serialized, so their versions are numbered in the order they're uploaded.
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private VersioningFileSystem(final VersioningFileSystemBuilder<T> builder) {
+        this.fileSystem = builder.fileSystem;
+        this.store      = builder.store;
+
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    public FileSystem<T> getFileSystem() {
+        return fileSystem;
+    }
+
+    public VersionedFileStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void initialize() {
+        fileSystem.initialize();
+    }
+
+    @Override
+    public void terminate() {
+        fileSystem.terminate();
+    }
+
+    @Override
+    public void excludeFileExtension(final String fileExtension) {
+        fileSystem.excludeFileExtension(fileExtension);
+    }
+
+    @Override
+    public void upload(final String filePath, final String destinationPath) {
+        checkNotNull(filePath);
+        checkNotNull(destinationPath);
+
+        final File file = new File(filePath);
+
+        uploadVersion(file, new FileMetaData.FileMetaDataBuilder().fileName(file.getName()), destinationPath);
+    }
+
+    @Override
+    public void upload(final String filePath, final FileMetaData fileMetaData, final String destinationPath) {
+        checkNotNull(filePath, fileMetaData, destinationPath);
+
+        uploadVersion(new File(filePath), new FileMetaData.FileMetaDataBuilder(fileMetaData), destinationPath);
+    }
+
+    private void uploadVersion(final File file, final FileMetaData.FileMetaDataBuilder metaData,
+                               final String destinationPath) {
+        checkFile(file, "File to be uploaded wasn't found!");
+        checkArgument(file.isFile(), "Only files can be uploaded!");
+
+        final String path = pathOf(destinationPath, file.getName());
+
+        // The version is stored only once the upload succeeded, so failed uploads don't use up numbers.
+        synchronized (lockOf(path)) {
+            final VersionedFileStore.Version latest = store.latest(path);
+
+            fileSystem.upload(file.getPath(), metaData.version(latest == null ? 1 : latest.getNumber() + 1).build(),
+                    destinationPath);
+
+            store.put(path, file.toPath());
+        }
+    }
+
+    /**
+     * @return path that the wrapped file system stores the file with the specified
+     * {@code name} under when it's uploaded to the {@code destinationPath}
+     */
+    private String pathOf(final String destinationPath, final String name) {
+        final String directory = fileSystem.resolveDestination(destinationPath);
+
+        return directory.isEmpty() ? name : directory + "/" + name;
+    }
+
+    /**
+     * @return path that versions of the file on the specified {@code path} are stored under
+     */
+    private String resolve(final String path) {
+        final Path file = Paths.get(path);
+
+        if (file.getFileName() == null)
+            return path;
+
+        final Path parent = file.getParent();
+
+        return pathOf(parent == null ? "" : parent.toString(), file.getFileName().toString());
+    }
+
+    private Object lockOf(final String path) {
+        return locks[Math.floorMod(path.hashCode(), LOCK_STRIPES)];
+    }
+
+    @Override
+    public void uploadCollection(final List<String> filePaths, final String destinationPath) {
+        checkNotNull(filePaths);
+        checkNotNull(destinationPath);
+
+        filePaths.forEach(filePath -> upload(filePath, destinationPath));
+    }
+
+    /**
+     * Uploads the range to the wrapped file system. Ranges of a file are uploaded in
+     * order, so the file is stored as a new version once the range that reaches its
+     * end is uploaded.
+     */
+    @Override
+    public void uploadRange(final String filePath, final long offset, final long length,
+                            final String destinationPath) {
+        checkNotNull(filePath);
+        checkNotNull(destinationPath);
+
+        final File file = new File(filePath);
+        final String path = pathOf(destinationPath, file.getName());
+
+        synchronized (lockOf(path)) {
+            fileSystem.uploadRange(filePath, offset, length, destinationPath);
+
+            if (length >= file.length() - offset)
+                store.put(path, file.toPath());
+        }
+    }
+
+    /**
+     * Returns all stored versions of the file on the specified {@code path}, from the
+     * oldest to the newest.
+     *
+     * @param path of the file
+     *
+     * @return stored versions, or an empty list if the file was never uploaded
+     *
+     * @exception NullPointerException if the specified {@code path} is null
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public List<VersionedFileStore.Version> versions(final String path) {
+        checkNotNull(path);
+
+        return store.versions(resolve(path));
+    }
+
+    @Override
+    public void download(final String path) {
+        fileSystem.download(path);
+    }
+
+    @Override
+    public void download(final String path, final String destinationPath) {
+        fileSystem.download(path, destinationPath);
+    }
+
+    /**
+     * Copies the specified {@code version} of the file on the {@code path} to the
+     * directory on the {@code destinationPath}, under the name of the file.
+     *
+     * @param path of the file to be downloaded
+     * @param version number of the version to be downloaded
+     * @param destinationPath directory on the local machine that the file is copied to
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception exceptions.FileNotFoundException if the version wasn't found
+     * @exception UncheckedIOException if an I/O error occurs
+     */
+    public void download(final String path, final long version, final String destinationPath) {
+        checkNotNull(path);
+        checkNotNull(destinationPath);
+
+        final Path name = Paths.get(path).getFileName();
+
+        checkArgument(name != null, "File name is missing!");
+
+        try {
+            final Path destination = Files.createDirectories(Paths.get(destinationPath));
+
+            store.copy(resolve(path), version, destination.resolve(name.toString()));
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public long download(final String path, final long offset, final long length, final OutputStream output) {
+        return fileSystem.download(path, offset, length, output);
+    }
+
+    @Override
+    public long size(final String path) {
+        return fileSystem.size(path);
+    }
+
+    @Override
+    public FileMetaData getFileMetaData(final String path) {
+        return fileSystem.getFileMetaData(path);
+    }
+
+    @Override
+    public String resolveDestination(final String destinationPath) {
+        return fileSystem.resolveDestination(destinationPath);
+    }
+
+    @Override
+    public String getDownloadPath() {
+        return fileSystem.getDownloadPath();
+    }
+
+    @Override
+    public void downloadMultiple(final List<String> paths) {
+        fileSystem.downloadMultiple(paths);
+    }
+
+    /**
+     * Deletes the latest version of the file from the wrapped file system. Stored
+     * versions are kept, so they can still be restored.
+     */
+    @Override
+    public void delete(final String path) {
+        fileSystem.delete(path);
+    }
+
+    @Override
+    public void createDir(final String dirPath) {
+        fileSystem.createDir(dirPath);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return fileSystem.findAll();
+    }
+
+    @Override
+    public List<T> findFileByName(final String name) {
+        return fileSystem.findFileByName(name);
+    }
+
+    @Override
+    public List<T> findFileByExtension(final String extension) {
+        return fileSystem.findFileByExtension(extension);
+    }
+
+    @Override
+    public List<T> findFileByParent(final T parent) {
+        return fileSystem.findFileByParent(parent);
+    }
+
+    @Override
+    public List<T> findDirectory(final String name) {
+        return fileSystem.findDirectory(name);
+    }
+
+    @Override
+    public List<T> findFileByMetaData(final MetaDataQuery query) {
+        return fileSystem.findFileByMetaData(query);
+    }
+
+    @Override
+    public Stream<T> streamAll() {
+        return fileSystem.streamAll();
+    }
+
+    @Override
+    public Stream<T> streamFileByName(final String name) {
+        return fileSystem.streamFileByName(name);
+    }
+
+    @Override
+    public Stream<T> streamFileByExtension(final String extension) {
+        return fileSystem.streamFileByExtension(extension);
+    }
+
+    @Override
+    public Stream<T> streamFileByParent(final T parent) {
+        return fileSystem.streamFileByParent(parent);
+    }
+
+    @Override
+    public Stream<T> streamDirectory(final String name) {
+        return fileSystem.streamDirectory(name);
+    }
+
+    public static class VersioningFileSystemBuilder<T> {
+
+        private final FileSystem<T> fileSystem;
+
+        private final VersionedFileStore store;
+
+        public VersioningFileSystemBuilder(final FileSystem<T> fileSystem, final VersionedFileStore store) {
+            this.fileSystem = checkNotNull(fileSystem);
+            this.store = checkNotNull(store);
+        }
+
+        public VersioningFileSystem<T> build() {
+            return new VersioningFileSystem<>(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,210 @@
+package util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static util.Preconditions.checkArgument;
+import static util.Preconditions.checkNotNull;
+
+/**
+ * Static convenience methods for copying bytes between files, channels and streams.
+ *
+ * <p>
+ * Whenever one side of a transfer is a {@link FileChannel} the bytes are moved with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} or
+ * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}, which the
+ * operating system can perform without copying the data to user space
+ * (for example with {@code sendfile} or {@code copy_file_range} on Linux).
+ * All other transfers go through a large, per thread, direct buffer so no
+ * garbage is created for every copied chunk.
+ * </p>
+ */
+public class Transfers {
+
+    /**
+     * Size of the direct buffer used when neither side is a file channel.
+     */
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private Transfers() {}
+
+    /**
+     * Copies the content of the {@code source} file to the {@code destination} file.
+     * The destination file is created if it doesn't exist or truncated if it does.
+     * Copying a file to itself leaves it unchanged.
+     *
+     * @param source file to be copied
+     * @param destination file to copy to
+     *
+     * @return number of copied bytes
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IOException if an I/O error occurs
+     */
+    public static long copy(final File source, final File destination) throws IOException {
+        checkNotNull(source);
+        checkNotNull(destination);
+
+        // Truncating the destination would otherwise destroy the source before it's read.
+        if (destination.exists() && Files.isSameFile(source.toPath(), destination.toPath()))
+            return source.length();
+
+        try (final FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             final FileChannel output = FileChannel.open(destination.toPath(), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return transferTo(input, 0, input.size(), output);
+        }
+    }
+
+    /**
+     * Copies all remaining bytes of the {@code source} channel to the {@code destination}
+     * channel. Neither of the channels is closed.
+     *
+     * @param source channel to read from
+     * @param destination channel to write to
+     *
+     * @return number of copied bytes
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IOException if an I/O error occurs
+     */
+    public static long copy(final ReadableByteChannel source, final WritableByteChannel destination)
+            throws IOException {
+        checkNotNull(source);
+        checkNotNull(destination);
+
+        if (source instanceof FileChannel) {
+            final FileChannel input = (FileChannel) source;
+            final long position = input.position();
+            final long copied = transferTo(input, position, input.size() - position, destination);
+
+            input.position(position + copied);
+
+            return copied;
+        }
+
+        if (destination instanceof FileChannel)
+            return transferFrom(source, (FileChannel) destination);
+
+        return bufferedCopy(source, destination);
+    }
+
+    /**
+     * Copies all remaining bytes of the {@code source} stream to the {@code destination}
+     * stream. Neither of the streams is closed. File streams are copied through
+     * their channels.
+     *
+     * @param source stream to read from
+     * @param destination stream to write to
+     *
+     * @return number of copied bytes
+     *
+     * @exception NullPointerException if one of the specified parameters is null
+     * @exception IOException if an I/O error occurs
+     */
+    public static long copy(final InputStream source, final OutputStream destination) throws IOException {
+        checkNotNull(source);
+        checkNotNull(destination);
+
+        final ReadableByteChannel input = source instanceof FileInputStream
+                ? ((FileInputStream) source).getChannel()
+                : Channels.newChannel(source);
+
+        final WritableByteChannel output = destination instanceof FileOutputStream
+                ? ((FileOutputStream) destination).getChannel()
+                : Channels.newChannel(destination);
+
+        return copy(input, output);
+    }
+
+    /**
+     * Copies {@code count} bytes of the {@code source} file channel, starting at the
+     * specified {@code position}, to the {@code destination} channel. The position of
+     * the source channel isn't changed and neither of the channels is closed.
+     *
+     * @param source channel to read from
+     * @param position position in the source channel of the first copied byte
+     * @param count number of bytes to copy
+     * @param destination channel to write to
+     *
+     * @return number of copied bytes, which is less than {@code count} only if the
+     * end of the source was reached
+     *
+     * @exception NullPointerException if one of the specified channels is null
+     * @exception IllegalArgumentException if the position or count is negative
+     * @exception IOException if an I/O error occurs
+     */
+    public static long copy(final FileChannel source, final long position, final long count,
+                            final WritableByteChannel destination) throws IOException {
+        checkNotNull(source);
+        checkNotNull(destination);
+        checkArgument(position >= 0 && count >= 0, "Position and count can't be negative!");
+
+        return transferTo(source, position, count, destination);
+    }
+
+    private static long transferTo(final FileChannel source, final long position, final long count,
+                                   final WritableByteChannel destination) throws IOException {
+        long copied = 0;
+
+        // A single transfer can move fewer bytes than requested, so it's repeated
+        // until everything is copied or the end of the file is reached.
+        while (copied < count) {
+            final long transferred = source.transferTo(position + copied, count - copied, destination);
+
+            if (transferred <= 0)
+                break;
+
+            copied += transferred;
+        }
+
+        return copied;
+    }
+
+    private static long transferFrom(final ReadableByteChannel source, final FileChannel destination)
+            throws IOException {
+        final long start = destination.position();
+
+        long position = start;
+        long transferred;
+
+        while ((transferred = destination.transferFrom(source, position, BUFFER_SIZE)) > 0)
+            position += transferred;
+
+        destination.position(position);
+
+        return position - start;
+    }
+
+    private static long bufferedCopy(final ReadableByteChannel source, final WritableByteChannel destination)
+            throws IOException {
+        final ByteBuffer buffer = BUFFER.get();
+
+        buffer.clear();
+
+        long copied = 0;
+
+        while (source.read(buffer) >= 0 || buffer.position() > 0) {
+            buffer.flip();
+            copied += destination.write(buffer);
+            buffer.compact();
+        }
+
+        return copied;
+    }
+
+}